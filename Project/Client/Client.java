@@ -1,11 +1,14 @@
 package Project.Client;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.CompletableFuture;
@@ -22,21 +25,32 @@ import Project.Client.Interfaces.IReadyEvent;
 import Project.Client.Interfaces.IRoomEvents;
 import Project.Client.Interfaces.ITimeEvents;
 import Project.Client.Interfaces.ITurnEvent;
+import Project.Common.ChoiceRules;
 import Project.Common.Command;
 import Project.Common.ConnectionPayload;
 import Project.Common.Constants;
+import Project.Common.FrameCodec;
 import Project.Common.LoggerUtil;
+import Project.Common.MemberInfo;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
 import Project.Common.Phase;
 import Project.Common.PointsPayload;
 import Project.Common.ReadyPayload;
 import Project.Common.RoomAction;
+import Project.Common.RoomDirectoryDeltaPayload;
+import Project.Common.RoomDirectoryPayload;
+import Project.Common.RoomInfo;
+import Project.Common.RoomMembershipPayload;
 import Project.Common.RoomResultPayload;
+import Project.Common.RoomSnapshotPayload;
+import Project.Common.RoundStatePayload;
+import Project.Common.ScoreboardPayload;
 import Project.Common.TextFX;
 import Project.Common.User;
 import Project.Common.TextFX.Color;
 import Project.Common.TimerPayload;
+import Project.Common.TimerType;
 
 /**
  * Demoing bi-directional communication between client and server in a
@@ -56,11 +70,17 @@ public enum Client {
         LoggerUtil.INSTANCE.setConfig(config);
     }
     private Socket server = null;
-    private ObjectOutputStream out = null;
-    private ObjectInputStream in = null;
+    private DataOutputStream out = null;
+    private DataInputStream in = null;
     private boolean isRPS5 = false;
     private boolean isCooldown = false;
     private long hostId = Constants.DEFAULT_CLIENT_ID;
+    // estimated server clock minus local clock (ms); each sample also includes the
+    // network delay so the largest recent one is the closest
+    private static final int CLOCK_OFFSET_SAMPLES = 8;
+    private final long[] clockOffsetSamples = new long[CLOCK_OFFSET_SAMPLES];
+    private int clockOffsetCount = 0;
+    private volatile long clockOffset = 0;
 
     public boolean isRPS5() {
         return isRPS5;
@@ -136,11 +156,7 @@ public enum Client {
     @Deprecated
     private boolean connect(String address, int port) {
         try {
-            server = new Socket(address, port);
-            // channel to send to server
-            out = new ObjectOutputStream(server.getOutputStream());
-            // channel to listen to server
-            in = new ObjectInputStream(server.getInputStream());
+            openConnection(address, port);
             LoggerUtil.INSTANCE.info("Client connected");
             // Use CompletableFuture to run listenToServer() in a separate thread
             CompletableFuture.runAsync(this::listenToServer);
@@ -163,11 +179,7 @@ public enum Client {
     public boolean connect(String address, int port, String username) {
         myUser.setClientName(username);
         try {
-            server = new Socket(address, port);
-            // channel to send to server
-            out = new ObjectOutputStream(server.getOutputStream());
-            // channel to listen to server
-            in = new ObjectInputStream(server.getInputStream());
+            openConnection(address, port);
             LoggerUtil.INSTANCE.info("Client connected");
             // Use CompletableFuture to run listenToServer() in a separate thread
             CompletableFuture.runAsync(this::listenToServer);
@@ -180,6 +192,24 @@ public enum Client {
         return isConnected();
     }
 
+    /**
+     * Opens the socket and performs the framed protocol handshake
+     * (see FrameCodec), asking for the binary encoding; works with both the
+     * thread and nio server transports
+     * 
+     * @param address
+     * @param port
+     * @throws IOException
+     */
+    private void openConnection(String address, int port) throws IOException {
+        server = new Socket(address, port);
+        // channel to send to server
+        out = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
+        FrameCodec.writeHandshake(out);
+        // channel to listen to server
+        in = new DataInputStream(new BufferedInputStream(server.getInputStream()));
+    }
+
     /**
      * <p>
      * Check if the string contains the <i>connect</i> command
@@ -355,6 +385,35 @@ public enum Client {
         sendToServer(payload);
     }
 
+    /**
+     * Requests a page of the room directory (rooms with their player count,
+     * phase and host)
+     * 
+     * @param query  partial room name, empty for all rooms
+     * @param cursor the nextCursor of the previous page or null for the first
+     * @throws IOException
+     */
+    public void sendRoomDirectoryRequest(String query, String cursor) throws IOException {
+        RoomDirectoryPayload rdp = new RoomDirectoryPayload();
+        rdp.setMessage(query);
+        rdp.setCursor(cursor);
+        sendToServer(rdp);
+    }
+
+    /**
+     * Subscribes to live changes of rooms matching the query; the server pushes
+     * them in batches until the subscription is replaced or stopped
+     * 
+     * @param query partial room name, empty for all rooms, or null to stop
+     * @throws IOException
+     */
+    public void sendRoomDirectorySubscription(String query) throws IOException {
+        Payload payload = new Payload();
+        payload.setPayloadType(PayloadType.ROOM_DIRECTORY_SUBSCRIBE);
+        payload.setMessage(query);
+        sendToServer(payload);
+    }
+
     /**
      * Sends a reverse message action to the server
      * 
@@ -412,8 +471,10 @@ public enum Client {
 
     private void sendToServer(Payload payload) throws IOException {
         if (isConnected()) {
-            out.writeObject(payload);
-            out.flush(); // good practice to ensure data is written out immediately
+            // UI and listener threads may both send, keep frames from interleaving
+            synchronized (out) {
+                FrameCodec.writeFrame(out, payload, FrameCodec.CURRENT_VERSION); // flushes to ensure data is written out immediately
+            }
         } else {
             LoggerUtil.INSTANCE.warning(
                     "Not connected to server (hint: type `/connect host:port` without the quotes and replace host/port with the necessary info)");
@@ -471,7 +532,7 @@ public enum Client {
     private void listenToServer() {
         try {
             while (isRunning && isConnected()) {
-                Payload fromServer = (Payload) in.readObject(); // blocking read
+                Payload fromServer = FrameCodec.readFrame(in, FrameCodec.CURRENT_VERSION); // blocking read
                 if (fromServer != null) {
                     processPayload(fromServer);
 
@@ -480,7 +541,7 @@ public enum Client {
                     break;
                 }
             }
-        } catch (ClassCastException | ClassNotFoundException cce) {
+        } catch (ClassCastException cce) {
             LoggerUtil.INSTANCE.severe("Error reading object as specified type:", cce);
             // cce.printStackTrace();
         } catch (IOException e) {
@@ -523,9 +584,19 @@ public enum Client {
             case SYNC_CLIENT:
                 processRoomAction(payload);
                 break;
+            case ROOM_SNAPSHOT:
+            case ROOM_MEMBERSHIP:
+                processRoomAction(payload);
+                break;
             case ROOM_LIST:
                 processRoomsList(payload);
                 break;
+            case ROOM_DIRECTORY:
+                processRoomDirectory(payload);
+                break;
+            case ROOM_DIRECTORY_DELTA:
+                processRoomDirectoryDelta(payload);
+                break;
             case PayloadType.READY:
                 processReadyStatus(payload, false);
                 break;
@@ -556,6 +627,12 @@ public enum Client {
             case PayloadType.POINTS:
                 processPoints(payload);
                 break;
+            case PayloadType.SCOREBOARD:
+                processScoreboard(payload);
+                break;
+            case PayloadType.ROUND_STATE:
+                processRoundState(payload);
+                break;
             case PayloadType.HOST:
                 ConnectionPayload cp = (ConnectionPayload) payload;
                 this.hostId = cp.getClientId();
@@ -634,13 +711,114 @@ public enum Client {
         }
     }
 
+    private void processScoreboard(Payload payload) {
+        if (!(payload instanceof ScoreboardPayload)) {
+            error("Invalid payload subclass for processScoreboard");
+            return;
+        }
+        ScoreboardPayload sp = (ScoreboardPayload) payload;
+        long[] clientIds = sp.getClientIds();
+        int[] points = sp.getPoints();
+        for (int i = 0; i < clientIds.length; i++) {
+            long targetId = clientIds[i];
+            int targetPoints = points[i];
+            if (knownClients.containsKey(targetId)) {
+                knownClients.get(targetId).setPoints(targetPoints);
+
+                passToUICallback(IPointsEvent.class, e -> e.onPointsUpdate(targetId, targetPoints));
+            }
+        }
+    }
+
+    /**
+     * Replays a round transition: how the last round ended, then the start of
+     * the next one (or the game over message)
+     * 
+     * @param payload
+     */
+    private void processRoundState(Payload payload) {
+        if (!(payload instanceof RoundStatePayload)) {
+            error("Invalid payload subclass for processRoundState");
+            return;
+        }
+        RoundStatePayload rs = (RoundStatePayload) payload;
+        for (long clientId : rs.getNoPick()) {
+            markEliminated(clientId);
+            clientSideGameEvent(getDisplayNameFromId(clientId) + " eliminated (did not pick)");
+        }
+        if (rs.getChoiceCounts() != null) {
+            clientSideGameEvent("Mass match: " + ChoiceRules.RPSLS.formatTally(rs.getChoiceCounts()));
+        } else if (rs.getBattles() != null && !rs.getBattles().isEmpty()) {
+            StringBuilder battleLog = new StringBuilder("Battle Results:\n");
+            rs.getBattles().forEach(battle -> battleLog.append(battle.format(
+                    getDisplayNameFromId(battle.getAttackerId()), getDisplayNameFromId(battle.getDefenderId())))
+                    .append("\n"));
+            clientSideGameEvent(battleLog.toString());
+        }
+        processScoreboard(rs);
+        for (long clientId : rs.getEliminated()) {
+            markEliminated(clientId);
+            if (rs.getChoiceCounts() == null) {
+                clientSideGameEvent(getDisplayNameFromId(clientId) + " has been eliminated!");
+            }
+        }
+        if (rs.getChoiceCounts() != null) {
+            clientSideGameEvent(String.format("%d players have been eliminated!", rs.getEliminated().length));
+        }
+        if (rs.getMessage() != null) {
+            clientSideGameEvent(rs.getMessage());
+        }
+        if (rs.getDeadline() <= 0) {
+            passToUICallback(ITimeEvents.class, e -> e.onTimerUpdate(TimerType.ROUND, -1));
+            return;
+        }
+        processResetTurn();
+        clientSideGameEvent(String.format("Round %d has started", rs.getRound()));
+        updateClockOffset(rs.getServerTime());
+        long localDeadline = rs.getDeadline() - clockOffset;
+        passToUICallback(ITimeEvents.class, e -> e.onTimerDeadline(TimerType.ROUND, localDeadline));
+    }
+
+    private void markEliminated(long clientId) {
+        if (knownClients.containsKey(clientId)) {
+            knownClients.get(clientId).setEliminated(true);
+        }
+    }
+
+    /**
+     * Adds a server timestamp to the clock offset estimate
+     * 
+     * @param serverTime server epoch millis
+     */
+    private void updateClockOffset(long serverTime) {
+        clockOffsetSamples[clockOffsetCount++ % CLOCK_OFFSET_SAMPLES] = serverTime - System.currentTimeMillis();
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < Math.min(clockOffsetCount, CLOCK_OFFSET_SAMPLES); i++) {
+            best = Math.max(best, clockOffsetSamples[i]);
+        }
+        clockOffset = best;
+    }
+
+    /**
+     * @return estimated server clock minus local clock in milliseconds
+     */
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
     private void processCurrentTimer(Payload payload) {
         if (!(payload instanceof TimerPayload)) {
             error("Invalid payload subclass for processCurrentTimer");
             return;
         }
         TimerPayload timerPayload = (TimerPayload) payload;
-
+        if (timerPayload.getDeadline() > 0) {
+            updateClockOffset(timerPayload.getServerTime());
+            // convert to the local clock so the UI can count down on its own
+            long localDeadline = timerPayload.getDeadline() - clockOffset;
+            passToUICallback(ITimeEvents.class, e -> e.onTimerDeadline(timerPayload.getTimerType(), localDeadline));
+            return;
+        }
         passToUICallback(ITimeEvents.class, e -> e.onTimerUpdate(timerPayload.getTimerType(), timerPayload.getTime()));
     }
 
@@ -748,6 +926,28 @@ public enum Client {
                 String.join(System.lineSeparator(), rooms));
     }
 
+    private void processRoomDirectory(Payload payload) {
+        if (!(payload instanceof RoomDirectoryPayload)) {
+            error("Invalid payload subclass for processRoomDirectory");
+            return;
+        }
+        RoomDirectoryPayload rdp = (RoomDirectoryPayload) payload;
+        List<RoomInfo> rooms = rdp.getRooms();
+        passToUICallback(IRoomEvents.class,
+                e -> e.onReceiveRoomDirectory(rooms, rdp.getCursor(), rdp.getMessage()));
+    }
+
+    private void processRoomDirectoryDelta(Payload payload) {
+        if (!(payload instanceof RoomDirectoryDeltaPayload)) {
+            error("Invalid payload subclass for processRoomDirectoryDelta");
+            return;
+        }
+        RoomDirectoryDeltaPayload delta = (RoomDirectoryDeltaPayload) payload;
+        List<RoomInfo> updated = delta.getUpdated() == null ? List.of() : delta.getUpdated();
+        List<String> removed = delta.getRemoved() == null ? List.of() : delta.getRemoved();
+        passToUICallback(IRoomEvents.class, e -> e.onRoomDirectoryDelta(updated, removed));
+    }
+
     private void processClientData(Payload payload) {
         if (myUser.getClientId() != Constants.DEFAULT_CLIENT_ID) {
             LoggerUtil.INSTANCE.warning(TextFX.colorize("Client ID already set, this shouldn't happen", Color.YELLOW));
@@ -785,7 +985,140 @@ public enum Client {
         return null;
     }
 
+    /**
+     * Replaces the member list and game state with a RoomSnapshotPayload, then
+     * replays it to the UI as quiet syncs
+     *
+     * @param snapshot
+     */
+    private void processRoomSnapshot(RoomSnapshotPayload snapshot) {
+        // build the new list first so nothing sees a half applied room
+        HashMap<Long, User> members = new HashMap<Long, User>();
+        List<MemberInfo> memberInfos = snapshot.getMembers() == null ? List.of() : snapshot.getMembers();
+        for (MemberInfo info : memberInfos) {
+            User user = isMyClientId(info.getClientId()) ? myUser : new User();
+            user.setClientId(info.getClientId());
+            user.setClientName(info.getClientName());
+            user.setReady(info.isReady());
+            user.setAway(info.isAway());
+            user.setTookTurn(info.didTakeTurn());
+            user.setPoints(info.getPoints());
+            members.put(info.getClientId(), user);
+        }
+        knownClients.clear();
+        knownClients.putAll(members);
+        currentRoom = snapshot.getMessage();
+        hostId = snapshot.getHostId();
+        if (snapshot.getPhase() != null) {
+            currentPhase = snapshot.getPhase();
+        }
+        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Joined %s with %d members", currentRoom,
+                memberInfos.size()), Color.GREEN));
+
+        String roomName = currentRoom;
+        passToUICallback(IRoomEvents.class, e -> e.onRoomAction(Constants.DEFAULT_CLIENT_ID, roomName, false, true));
+        for (MemberInfo info : memberInfos) {
+            long clientId = info.getClientId();
+            // only announce ourselves, everyone else was already here
+            boolean isQuiet = !isMyClientId(clientId);
+            passToUICallback(IRoomEvents.class, e -> e.onRoomAction(clientId, roomName, true, isQuiet));
+            passToUICallback(IReadyEvent.class, e -> e.onReceiveReady(clientId, info.isReady(), true));
+            passToUICallback(ITurnEvent.class, e -> e.onAwayStatusUpdate(clientId, info.isAway()));
+            passToUICallback(ITurnEvent.class, e -> e.onTookTurn(clientId, info.didTakeTurn()));
+            passToUICallback(IPointsEvent.class, e -> e.onPointsUpdate(clientId, info.getPoints()));
+        }
+        if (snapshot.getPhase() != null) {
+            passToUICallback(IPhaseEvent.class, e -> e.onReceivePhase(currentPhase));
+        }
+        passToUICallback(IRoomEvents.class, e -> e.onReceiveHost(hostId));
+        if (snapshot.getSettings() != null) {
+            snapshot.getSettings().forEach(this::applySetting);
+        }
+    }
+
+    /**
+     * Applies a batch of joins/leaves and shows one summary line per kind of
+     * change
+     *
+     * @param membership
+     */
+    private void processRoomMembership(RoomMembershipPayload membership) {
+        String roomName = membership.getMessage();
+        List<MemberInfo> joined = membership.getJoined() == null ? List.of() : membership.getJoined();
+        List<MemberInfo> left = new ArrayList<MemberInfo>();
+        if (membership.getLeft() != null) {
+            left.addAll(membership.getLeft());
+        }
+        if (membership.getDisconnected() != null) {
+            left.addAll(membership.getDisconnected());
+        }
+        for (MemberInfo info : left) {
+            knownClients.remove(info.getClientId());
+        }
+        for (MemberInfo info : joined) {
+            User user = knownClients.computeIfAbsent(info.getClientId(), id -> new User());
+            user.setClientId(info.getClientId());
+            user.setClientName(info.getClientName());
+            user.setReady(info.isReady());
+            user.setAway(info.isAway());
+            user.setTookTurn(info.didTakeTurn());
+            user.setPoints(info.getPoints());
+        }
+        boolean isHostChange = membership.getHostId() != hostId;
+        hostId = membership.getHostId();
+
+        for (MemberInfo info : left) {
+            passToUICallback(IRoomEvents.class, e -> e.onRoomAction(info.getClientId(), roomName, false, true));
+        }
+        for (MemberInfo info : joined) {
+            passToUICallback(IRoomEvents.class, e -> e.onRoomAction(info.getClientId(), roomName, true, true));
+        }
+        if (isHostChange) {
+            passToUICallback(IRoomEvents.class, e -> e.onReceiveHost(hostId));
+        }
+        showMembershipSummary(joined, "joined the room");
+        showMembershipSummary(membership.getLeft(), "left the room");
+        showMembershipSummary(membership.getDisconnected(), "disconnected");
+    }
+
+    /**
+     * Renders "a, b and 3 others joined the room" style chat lines
+     *
+     * @param members
+     * @param action
+     */
+    private void showMembershipSummary(List<MemberInfo> members, String action) {
+        if (members == null || members.isEmpty()) {
+            return;
+        }
+        final int named = 3;
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < Math.min(named, members.size()); i++) {
+            names.add(String.format("%s#%s", members.get(i).getClientName(), members.get(i).getClientId()));
+        }
+        String who;
+        if (members.size() > named) {
+            who = String.format("%s and %d others", String.join(", ", names), members.size() - named);
+        } else if (names.size() > 1) {
+            who = String.format("%s and %s", String.join(", ", names.subList(0, names.size() - 1)),
+                    names.get(names.size() - 1));
+        } else {
+            who = names.get(0);
+        }
+        String message = String.format("%s %s", who, action);
+        LoggerUtil.INSTANCE.info(TextFX.colorize(message, Color.BLUE));
+        passToUICallback(IMessageEvents.class, e -> e.onMessageReceive(Constants.DEFAULT_CLIENT_ID, message));
+    }
+
     private void processRoomAction(Payload payload) {
+        if (payload instanceof RoomSnapshotPayload) {
+            processRoomSnapshot((RoomSnapshotPayload) payload);
+            return;
+        }
+        if (payload instanceof RoomMembershipPayload) {
+            processRoomMembership((RoomMembershipPayload) payload);
+            return;
+        }
         if (!(payload instanceof ConnectionPayload)) {
             error("Invalid payload subclass for processRoomAction");
             return;
@@ -863,9 +1196,10 @@ public enum Client {
         if (parts.length < 2)
             return;
 
-        String key = parts[0].toLowerCase();
-        String value = parts[1].toLowerCase();
+        applySetting(parts[0].toLowerCase(), parts[1].toLowerCase());
+    }
 
+    private void applySetting(String key, String value) {
         if (key.equals("rps5")) {
             isRPS5 = "on".equals(value) || "true".equals(value) || "enabled".equals(value);
         } else if (key.equals("cooldown")) {
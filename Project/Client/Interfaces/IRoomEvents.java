@@ -2,6 +2,8 @@ package Project.Client.Interfaces;
 
 import java.util.List;
 
+import Project.Common.RoomInfo;
+
 /**
  * Interface for handling room events.
  */
@@ -15,6 +17,28 @@ public interface IRoomEvents extends IClientEvents {
      */
     void onReceiveRoomList(List<String> rooms, String message);
 
+    /**
+     * Received a page of the room directory from server.
+     *
+     * @param rooms      Rooms on this page (may be empty).
+     * @param nextCursor Pass to Client.sendRoomDirectoryRequest() for the next
+     *                   page, null if this was the last one.
+     * @param message    A message related to the action, may be null.
+     */
+    default void onReceiveRoomDirectory(List<RoomInfo> rooms, String nextCursor, String message) {
+        // default impl to avoid breaking existing classes if they don't care
+    }
+
+    /**
+     * Received pushed changes for a room directory subscription.
+     *
+     * @param updated Rooms that were created or changed.
+     * @param removed Names of rooms that were closed.
+     */
+    default void onRoomDirectoryDelta(List<RoomInfo> updated, List<String> removed) {
+        // default impl to avoid breaking existing classes if they don't care
+    }
+
     /**
      * Receives the room name when the client is added to the room.
      *
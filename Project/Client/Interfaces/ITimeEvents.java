@@ -10,4 +10,14 @@ public interface ITimeEvents extends IClientEvents {
      * @param time      The time (use -1 to reset/cancel/stop)
      */
     void onTimerUpdate(TimerType timerType, int time);
+
+    /**
+     * A timer started (or was reset) and runs out at the given time; the UI
+     * counts down on its own until the next update
+     * 
+     * @param timerType The specifc timer
+     * @param deadline  Local epoch millis (already adjusted for the server clock
+     *                  offset)
+     */
+    void onTimerDeadline(TimerType timerType, long deadline);
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import Project.Client.Client;
 import Project.Client.Interfaces.IMessageEvents;
@@ -30,6 +31,10 @@ public class GameEventsView extends JPanel implements IPhaseEvent, IReadyEvent,
     private final JPanel content;
     private final boolean debugMode = true; // Set this to false to disable debugging styling
     private final JLabel timerText;
+    // repaints the countdown locally between server updates
+    private final Timer countdown;
+    private TimerType countdownType = null;
+    private long countdownDeadline = 0;
     private final GridBagConstraints gbcGlue = new GridBagConstraints();
 
     public GameEventsView() {
@@ -61,6 +66,7 @@ public class GameEventsView extends JPanel implements IPhaseEvent, IReadyEvent,
         timerText = new JLabel();
         this.add(timerText, BorderLayout.NORTH);
         timerText.setVisible(false);
+        countdown = new Timer(250, e -> renderCountdown());
         Client.INSTANCE.registerCallback(this);
     }
 
@@ -127,11 +133,45 @@ public class GameEventsView extends JPanel implements IPhaseEvent, IReadyEvent,
 
     @Override
     public void onTimerUpdate(TimerType timerType, int time) {
-        if (time >= 0) {
-            timerText.setText(String.format("%s timer: %s", timerType.name(), time));
-        } else {
-            timerText.setText(" ");
+        SwingUtilities.invokeLater(() -> {
+            if (timerType == countdownType) {
+                // explicit value (i.e., cancelled) replaces the local countdown
+                countdown.stop();
+                countdownType = null;
+            }
+            if (time >= 0) {
+                timerText.setText(String.format("%s timer: %s", timerType.name(), time));
+            } else {
+                timerText.setText(" ");
+            }
+            timerText.setVisible(true);
+        });
+    }
+
+    @Override
+    public void onTimerDeadline(TimerType timerType, long deadline) {
+        SwingUtilities.invokeLater(() -> {
+            countdownType = timerType;
+            countdownDeadline = deadline;
+            renderCountdown();
+            countdown.start();
+        });
+    }
+
+    /**
+     * Runs on the Swing thread (countdown Timer)
+     */
+    private void renderCountdown() {
+        if (countdownType == null) {
+            countdown.stop();
+            return;
         }
+        long remaining = Math.max(0, countdownDeadline - System.currentTimeMillis());
+        // round up so the label shows 0 only once time is really up
+        timerText.setText(String.format("%s timer: %s", countdownType.name(), (remaining + 999) / 1000));
         timerText.setVisible(true);
+        if (remaining == 0) {
+            countdown.stop();
+        }
     }
 }
@@ -6,6 +6,7 @@ import javax.swing.JButton;
 import javax.swing.JPanel;
 
 import Project.Client.Client;
+import Project.Common.Choice;
 import Project.Common.Phase;
 
 public class PlayView extends JPanel {
@@ -21,11 +22,11 @@ public class PlayView extends JPanel {
         btnLizard = new JButton("Lizard");
         btnSpock = new JButton("Spock");
 
-        btnRock.addActionListener(_ -> sendChoice("r"));
-        btnPaper.addActionListener(_ -> sendChoice("p"));
-        btnScissors.addActionListener(_ -> sendChoice("s"));
-        btnLizard.addActionListener(_ -> sendChoice("l"));
-        btnSpock.addActionListener(_ -> sendChoice("sp"));
+        btnRock.addActionListener(_ -> sendChoice(Choice.ROCK));
+        btnPaper.addActionListener(_ -> sendChoice(Choice.PAPER));
+        btnScissors.addActionListener(_ -> sendChoice(Choice.SCISSORS));
+        btnLizard.addActionListener(_ -> sendChoice(Choice.LIZARD));
+        btnSpock.addActionListener(_ -> sendChoice(Choice.SPOCK));
 
         buttonPanel.add(btnRock);
         buttonPanel.add(btnPaper);
@@ -44,9 +45,9 @@ public class PlayView extends JPanel {
         });
     }
 
-    private void sendChoice(String choice) {
+    private void sendChoice(Choice choice) {
         try {
-            Client.INSTANCE.sendDoTurn(choice);
+            Client.INSTANCE.sendDoTurn(choice.getCode());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -12,6 +12,7 @@ public class ReadyView extends JPanel implements IRoomEvents {
     private javax.swing.JCheckBox chkRPS5;
     private javax.swing.JCheckBox chkRPS5Final3;
     private javax.swing.JCheckBox chkCooldown;
+    private javax.swing.JCheckBox chkMassMatch;
 
     public ReadyView() {
         this.setLayout(new javax.swing.BoxLayout(this, javax.swing.BoxLayout.Y_AXIS));
@@ -56,6 +57,10 @@ public class ReadyView extends JPanel implements IRoomEvents {
         chkCooldown.addActionListener(_ -> sendSetting("cooldown", chkCooldown.isSelected()));
         this.add(chkCooldown);
 
+        chkMassMatch = new javax.swing.JCheckBox("Mass Match (large rooms)");
+        chkMassMatch.addActionListener(_ -> sendSetting("mass", chkMassMatch.isSelected()));
+        this.add(chkMassMatch);
+
         // Initial state check
         updateHostControls();
     }
@@ -66,6 +71,7 @@ public class ReadyView extends JPanel implements IRoomEvents {
         // Only show Final 3 option if Host AND RPS5 is enabled
         chkRPS5Final3.setVisible(isHost && chkRPS5.isSelected());
         chkCooldown.setVisible(isHost);
+        chkMassMatch.setVisible(isHost);
         this.revalidate();
         this.repaint();
     }
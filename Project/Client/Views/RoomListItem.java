@@ -13,6 +13,7 @@ import javax.swing.SwingUtilities;
  */
 public class RoomListItem extends JPanel {
     private final JLabel roomName;
+    private final JLabel details;
     private final JButton joinButton;
 
     /**
@@ -22,6 +23,19 @@ public class RoomListItem extends JPanel {
      * @param onJoin - Callback to trigger when the button is clicked.
      */
     public RoomListItem(String room, Consumer<String> onJoin) {
+        this(room, null, onJoin);
+    }
+
+    /**
+     * Constructs a RoomListItem with the specified room name, details and
+     * callback.
+     *
+     * @param room    - Name of room to show on the UI.
+     * @param details - Extra info shown next to the name (i.e., player count),
+     *                may be null.
+     * @param onJoin  - Callback to trigger when the button is clicked.
+     */
+    public RoomListItem(String room, String details, Consumer<String> onJoin) {
         setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
 
         roomName = new JLabel(room);
@@ -31,7 +45,11 @@ public class RoomListItem extends JPanel {
         joinButton.setToolTipText("Join this room");
         joinButton.addActionListener(_ -> SwingUtilities.invokeLater(() -> onJoin.accept(roomName.getText())));
 
+        this.details = new JLabel(details == null ? "" : details);
+
         add(roomName);
+        add(Box.createHorizontalStrut(10));
+        add(this.details);
         add(Box.createHorizontalGlue()); // Fills up horizontal space
         add(joinButton);
     }
@@ -44,4 +62,13 @@ public class RoomListItem extends JPanel {
     public String getRoomName() {
         return roomName.getText();
     }
+
+    /**
+     * Updates the extra info shown next to the name.
+     *
+     * @param details the new text, may be null.
+     */
+    public void setDetails(String details) {
+        this.details.setText(details == null ? "" : details);
+    }
 }
\ No newline at end of file
@@ -27,6 +27,8 @@ import Project.Client.Client;
 import Project.Client.Interfaces.ICardControls;
 import Project.Client.Interfaces.IRoomEvents;
 import Project.Common.LoggerUtil;
+import Project.Common.Phase;
+import Project.Common.RoomInfo;
 
 /**
  * RoomsView class represents the UI for managing chat rooms.
@@ -35,6 +37,11 @@ public class RoomsView extends JPanel implements IRoomEvents {
     private final JPanel container;
     private final List<RoomListItem> rooms = new ArrayList<>();
     private final JLabel message;
+    private final JButton moreButton;
+    // directory paging state
+    private String lastQuery = "";
+    private String nextCursor = null;
+    private boolean isAppending = false;
 
     /**
      * Constructor to create the RoomsView UI.
@@ -54,7 +61,15 @@ public class RoomsView extends JPanel implements IRoomEvents {
         scroll.setBorder(BorderFactory.createEmptyBorder());
 
         JButton back = new JButton("Close");
-        back.addActionListener(_ -> controls.previousView());
+        back.addActionListener(_ -> {
+            try {
+                // stop the live updates while nobody is looking
+                Client.INSTANCE.sendRoomDirectorySubscription(null);
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.warning("Error stopping room updates: " + e.getMessage());
+            }
+            controls.previousView();
+        });
 
         JPanel search = new JPanel();
         search.setLayout(new BoxLayout(search, BoxLayout.Y_AXIS));
@@ -73,14 +88,13 @@ public class RoomsView extends JPanel implements IRoomEvents {
         searchButton.addActionListener(_ -> {
             SwingUtilities.invokeLater(() -> {
                 try {
-                    String query = searchValue.getText().trim();
-                    if (!query.isEmpty()) {
-                        removeAllRooms();
-                        Client.INSTANCE.sendRoomAction(query, RoomAction.LIST);
-                        message.setText("Sent query");
-                    } else {
-                        message.setText("Can't search with an empty query");
-                    }
+                    // an empty query lists every room, a page at a time
+                    lastQuery = searchValue.getText().trim();
+                    isAppending = false;
+                    Client.INSTANCE.sendRoomDirectoryRequest(lastQuery, null);
+                    // keep the results live instead of polling
+                    Client.INSTANCE.sendRoomDirectorySubscription(lastQuery);
+                    message.setText("Sent query");
                 } catch (IOException e) {
                     LoggerUtil.INSTANCE.warning("Error sending request: " + e.getMessage(), e);
                     message.setText("Error sending request: " + e.getMessage());
@@ -139,8 +153,25 @@ public class RoomsView extends JPanel implements IRoomEvents {
         messageContainer.add(message);
         search.add(messageContainer);
 
+        moreButton = new JButton("More");
+        moreButton.setVisible(false);
+        moreButton.addActionListener(_ -> {
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    isAppending = true;
+                    Client.INSTANCE.sendRoomDirectoryRequest(lastQuery, nextCursor);
+                } catch (IOException e) {
+                    LoggerUtil.INSTANCE.warning("Error sending request: " + e.getMessage(), e);
+                    message.setText("Error sending request: " + e.getMessage());
+                }
+            });
+        });
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.add(moreButton, BorderLayout.NORTH);
+        footer.add(back, BorderLayout.SOUTH);
+
         this.add(search, BorderLayout.NORTH);
-        this.add(back, BorderLayout.SOUTH);
+        this.add(footer, BorderLayout.SOUTH);
         this.add(scroll, BorderLayout.CENTER);
 
         this.setName(CardViewName.ROOMS.name());
@@ -164,9 +195,19 @@ public class RoomsView extends JPanel implements IRoomEvents {
      * @param room The name of the room to add.
      */
     private void addRoom(String room) {
+        addRoom(room, null);
+    }
+
+    /**
+     * Adds a room to the rooms list.
+     *
+     * @param room    The name of the room to add.
+     * @param details Extra info shown next to the name, may be null.
+     */
+    private void addRoom(String room, String details) {
         if (room != null) {
             LoggerUtil.INSTANCE.info("Adding: " + room);
-            RoomListItem roomListItem = new RoomListItem(room, this::handleSelection);
+            RoomListItem roomListItem = new RoomListItem(room, details, this::handleSelection);
             roomListItem.setMaximumSize(new Dimension(Integer.MAX_VALUE, 40));
 
             container.add(roomListItem);
@@ -238,6 +279,61 @@ public class RoomsView extends JPanel implements IRoomEvents {
         }
     }
 
+    @Override
+    public void onReceiveRoomDirectory(List<RoomInfo> rooms, String nextCursor, String message) {
+        SwingUtilities.invokeLater(() -> {
+            if (!isAppending) {
+                removeAllRooms();
+            }
+            isAppending = false;
+            this.nextCursor = nextCursor;
+            moreButton.setVisible(nextCursor != null);
+            if (rooms != null) {
+                for (RoomInfo room : rooms) {
+                    addRoom(room.getName(), describe(room));
+                }
+            }
+            if (message != null && !message.isEmpty()) {
+                setMessage(message);
+            } else {
+                setMessage("Found Rooms: " + this.rooms.size() + (nextCursor != null ? "+" : ""));
+            }
+        });
+    }
+
+    @Override
+    public void onRoomDirectoryDelta(List<RoomInfo> updated, List<String> removed) {
+        SwingUtilities.invokeLater(() -> {
+            for (String room : removed) {
+                removeRoom(room);
+            }
+            for (RoomInfo room : updated) {
+                RoomListItem item = rooms.stream()
+                        .filter(r -> r.getRoomName().equalsIgnoreCase(room.getName()))
+                        .findFirst()
+                        .orElse(null);
+                if (item != null) {
+                    item.setDetails(describe(room));
+                } else {
+                    addRoom(room.getName(), describe(room));
+                }
+            }
+            setMessage("Found Rooms: " + rooms.size() + (nextCursor != null ? "+" : ""));
+        });
+    }
+
+    private static String describe(RoomInfo room) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(room.getClientCount()).append(room.getClientCount() == 1 ? " player" : " players");
+        if (room.getPhase() == Phase.IN_PROGRESS) {
+            sb.append(", in progress");
+        }
+        if (room.getHostName() != null) {
+            sb.append(", host ").append(room.getHostName());
+        }
+        return sb.toString();
+    }
+
     @Override
     public void onRoomAction(long clientId, String roomName, boolean isJoin, boolean isQuiet) {
         // unused
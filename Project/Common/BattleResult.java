@@ -0,0 +1,61 @@
+package Project.Common;
+
+import java.io.Serializable;
+
+/**
+ * One pairing of a round: the attacker's choice against the defender's.
+ * Immutable; the room sends them with the RoundStatePayload of the next
+ * round.
+ */
+public class BattleResult implements Serializable {
+    private final long attackerId;
+    private final Choice attackerChoice;
+    private final long defenderId;
+    private final Choice defenderChoice;
+    private final int result; // 1 = attacker wins, -1 = defender wins, 0 = tie
+
+    public BattleResult(long attackerId, Choice attackerChoice, long defenderId, Choice defenderChoice, int result) {
+        this.attackerId = attackerId;
+        this.attackerChoice = attackerChoice;
+        this.defenderId = defenderId;
+        this.defenderChoice = defenderChoice;
+        this.result = result;
+    }
+
+    public long getAttackerId() {
+        return attackerId;
+    }
+
+    public Choice getAttackerChoice() {
+        return attackerChoice;
+    }
+
+    public long getDefenderId() {
+        return defenderId;
+    }
+
+    public Choice getDefenderChoice() {
+        return defenderChoice;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    /**
+     * @param attackerName display name of the attacker
+     * @param defenderName display name of the defender
+     * @return the battle log line, i.e. "a#1(r) vs b#2(s): a#1 Wins!"
+     */
+    public String format(String attackerName, String defenderName) {
+        String outcome = result == 1 ? attackerName + " Wins!" : result == -1 ? defenderName + " Wins!" : "Tie!";
+        return String.format("%s(%s) vs %s(%s): %s", attackerName, attackerChoice.getCode(), defenderName,
+                defenderChoice.getCode(),
+                outcome);
+    }
+
+    @Override
+    public String toString() {
+        return format("#" + attackerId, "#" + defenderId);
+    }
+}
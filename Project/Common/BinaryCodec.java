@@ -0,0 +1,550 @@
+package Project.Common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written encoding of every Payload class used by frame version
+ * {@link FrameCodec#VERSION_BINARY}.
+ * <p>
+ * A body is <code>[class tag][PayloadType][clientId][message]</code> followed
+ * by the fields of the subclass. Numbers are varints (zigzag for signed
+ * values) and Strings are a varint length + 1 (0 means null) followed by UTF-8
+ * bytes, so the common case of a type, a small id and a short message fits in a
+ * handful of bytes instead of a serialized class descriptor.
+ * </p>
+ * <p>
+ * Note: PayloadType, TimerType, Phase and Choice are sent by ordinal, only
+ * append new constants to those enums. A new Payload subclass needs its own tag here.
+ * </p>
+ */
+public abstract class BinaryCodec {
+    // class tags
+    private static final byte PAYLOAD = 0;
+    private static final byte CONNECTION = 1;
+    private static final byte READY = 2;
+    private static final byte POINTS = 3;
+    private static final byte TIMER = 4;
+    private static final byte ROOM_RESULT = 5;
+    private static final byte ROOM_DIRECTORY = 6;
+    private static final byte ROOM_DIRECTORY_DELTA = 7;
+    private static final byte ROOM_SNAPSHOT = 8;
+    private static final byte ROOM_MEMBERSHIP = 9;
+    private static final byte SCOREBOARD = 10;
+    private static final byte ROUND_STATE = 11;
+
+    private static final PayloadType[] PAYLOAD_TYPES = PayloadType.values();
+    private static final TimerType[] TIMER_TYPES = TimerType.values();
+    private static final Phase[] PHASES = Phase.values();
+    private static final Choice[] CHOICES = Choice.values();
+
+    /**
+     * Growable byte buffer with the varint/String helpers
+     */
+    private static class Writer extends ByteArrayOutputStream {
+        private Writer() {
+            super(64);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeSigned(long value) {
+            writeVarLong((value << 1) ^ (value >> 63)); // zigzag
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        // lists are a varint size + 1 (0 means null) followed by the items
+        private void writeStrings(List<String> values) {
+            writeVarLong(values == null ? 0 : values.size() + 1L);
+            if (values != null) {
+                for (String value : values) {
+                    writeString(value);
+                }
+            }
+        }
+
+        private void writeRoomInfos(List<RoomInfo> infos) {
+            writeVarLong(infos == null ? 0 : infos.size() + 1L);
+            if (infos != null) {
+                for (RoomInfo info : infos) {
+                    writeString(info.getName());
+                    writeVarLong(info.getClientCount());
+                    writeVarLong(info.getPhase() == null ? 0 : info.getPhase().ordinal() + 1);
+                    writeString(info.getHostName());
+                }
+            }
+        }
+
+        private void writeMembers(List<MemberInfo> members) {
+            writeVarLong(members == null ? 0 : members.size() + 1L);
+            if (members != null) {
+                for (MemberInfo member : members) {
+                    writeSigned(member.getClientId());
+                    writeString(member.getClientName());
+                    write((member.isReady() ? 1 : 0) | (member.isAway() ? 2 : 0) | (member.didTakeTurn() ? 4 : 0));
+                    writeSigned(member.getPoints());
+                }
+            }
+        }
+
+        // arrays are a varint length followed by the items
+        private void writeLongs(long[] values) {
+            writeVarLong(values.length);
+            for (long value : values) {
+                writeSigned(value);
+            }
+        }
+
+        // nullable, so the varint is the length + 1 (0 means null)
+        private void writeCounts(int[] counts) {
+            writeVarLong(counts == null ? 0 : counts.length + 1L);
+            if (counts != null) {
+                for (int count : counts) {
+                    writeVarLong(count);
+                }
+            }
+        }
+
+        private void writeScoreboard(ScoreboardPayload scoreboard) {
+            write(scoreboard.isDelta() ? 1 : 0);
+            writeVarLong(scoreboard.getClientIds().length);
+            for (int i = 0; i < scoreboard.getClientIds().length; i++) {
+                writeSigned(scoreboard.getClientIds()[i]);
+                writeSigned(scoreboard.getPoints()[i]);
+            }
+        }
+
+        private void writeBattles(List<BattleResult> battles) {
+            writeVarLong(battles == null ? 0 : battles.size() + 1L);
+            if (battles != null) {
+                for (BattleResult battle : battles) {
+                    writeSigned(battle.getAttackerId());
+                    writeVarLong(battle.getAttackerChoice().ordinal() + 1);
+                    writeSigned(battle.getDefenderId());
+                    writeVarLong(battle.getDefenderChoice().ordinal() + 1);
+                    writeSigned(battle.getResult());
+                }
+            }
+        }
+
+        private void writeSettings(Map<String, String> settings) {
+            writeVarLong(settings == null ? 0 : settings.size() + 1L);
+            if (settings != null) {
+                for (Map.Entry<String, String> setting : settings.entrySet()) {
+                    writeString(setting.getKey());
+                    writeString(setting.getValue());
+                }
+            }
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) throws StreamCorruptedException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static long readSigned(ByteBuffer in) throws StreamCorruptedException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readLength(ByteBuffer in) throws StreamCorruptedException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.remaining() + 1L) {
+            throw new StreamCorruptedException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+
+    private static String readString(ByteBuffer in) throws StreamCorruptedException {
+        int length = readLength(in);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+
+    private static List<String> readStrings(ByteBuffer in) throws StreamCorruptedException {
+        int count = readLength(in);
+        if (count == 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(count - 1);
+        for (int i = 0; i < count - 1; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static List<RoomInfo> readRoomInfos(ByteBuffer in) throws StreamCorruptedException {
+        int count = readLength(in);
+        if (count == 0) {
+            return null;
+        }
+        List<RoomInfo> infos = new ArrayList<>(count - 1);
+        for (int i = 0; i < count - 1; i++) {
+            infos.add(new RoomInfo(readString(in), (int) readVarLong(in), readEnum(in, PHASES), readString(in)));
+        }
+        return infos;
+    }
+
+    private static List<MemberInfo> readMembers(ByteBuffer in) throws StreamCorruptedException {
+        int count = readLength(in);
+        if (count == 0) {
+            return null;
+        }
+        List<MemberInfo> members = new ArrayList<>(count - 1);
+        for (int i = 0; i < count - 1; i++) {
+            long clientId = readSigned(in);
+            String clientName = readString(in);
+            byte flags = in.get();
+            members.add(new MemberInfo(clientId, clientName, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0,
+                    (int) readSigned(in)));
+        }
+        return members;
+    }
+
+    private static long[] readLongs(ByteBuffer in) throws StreamCorruptedException {
+        long[] values = new long[readLength(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readSigned(in);
+        }
+        return values;
+    }
+
+    private static int[] readCounts(ByteBuffer in) throws StreamCorruptedException {
+        int count = readLength(in);
+        if (count == 0) {
+            return null;
+        }
+        int[] counts = new int[count - 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = (int) readVarLong(in);
+        }
+        return counts;
+    }
+
+    private static void readScoreboard(ByteBuffer in, ScoreboardPayload scoreboard) throws StreamCorruptedException {
+        scoreboard.setDelta(in.get() != 0);
+        int entries = readLength(in);
+        long[] clientIds = new long[entries];
+        int[] points = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            clientIds[i] = readSigned(in);
+            points[i] = (int) readSigned(in);
+        }
+        scoreboard.setClientIds(clientIds);
+        scoreboard.setPoints(points);
+    }
+
+    private static List<BattleResult> readBattles(ByteBuffer in) throws StreamCorruptedException {
+        int count = readLength(in);
+        if (count == 0) {
+            return null;
+        }
+        List<BattleResult> battles = new ArrayList<>(count - 1);
+        for (int i = 0; i < count - 1; i++) {
+            battles.add(new BattleResult(readSigned(in), readEnum(in, CHOICES), readSigned(in), readEnum(in, CHOICES),
+                    (int) readSigned(in)));
+        }
+        return battles;
+    }
+
+    private static Map<String, String> readSettings(ByteBuffer in) throws StreamCorruptedException {
+        int count = readLength(in);
+        if (count == 0) {
+            return null;
+        }
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (int i = 0; i < count - 1; i++) {
+            settings.put(readString(in), readString(in));
+        }
+        return settings;
+    }
+
+    private static <T extends Enum<T>> T readEnum(ByteBuffer in, T[] values) throws StreamCorruptedException {
+        int ordinal = (int) readVarLong(in) - 1;
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new StreamCorruptedException("Unknown constant " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static byte tagOf(Payload payload) throws NotSerializableException {
+        Class<?> type = payload.getClass();
+        if (type == Payload.class) {
+            return PAYLOAD;
+        } else if (type == ConnectionPayload.class) {
+            return CONNECTION;
+        } else if (type == ReadyPayload.class) {
+            return READY;
+        } else if (type == PointsPayload.class) {
+            return POINTS;
+        } else if (type == TimerPayload.class) {
+            return TIMER;
+        } else if (type == RoomResultPayload.class) {
+            return ROOM_RESULT;
+        } else if (type == RoomDirectoryPayload.class) {
+            return ROOM_DIRECTORY;
+        } else if (type == RoomDirectoryDeltaPayload.class) {
+            return ROOM_DIRECTORY_DELTA;
+        } else if (type == RoomSnapshotPayload.class) {
+            return ROOM_SNAPSHOT;
+        } else if (type == RoomMembershipPayload.class) {
+            return ROOM_MEMBERSHIP;
+        } else if (type == ScoreboardPayload.class) {
+            return SCOREBOARD;
+        } else if (type == RoundStatePayload.class) {
+            return ROUND_STATE;
+        }
+        throw new NotSerializableException("No binary encoding for " + type.getName());
+    }
+
+    /**
+     * Encodes a Payload into a standalone frame body
+     *
+     * @param payload
+     * @return the body bytes (without the length prefix)
+     * @throws NotSerializableException if the Payload class has no encoding
+     */
+    public static byte[] encode(Payload payload) throws NotSerializableException {
+        Writer out = new Writer();
+        byte tag = tagOf(payload);
+        out.write(tag);
+        out.writeVarLong(payload.getPayloadType() == null ? 0 : payload.getPayloadType().ordinal() + 1);
+        out.writeSigned(payload.getClientId());
+        out.writeString(payload.getMessage());
+        switch (tag) {
+            case CONNECTION:
+                ConnectionPayload cp = (ConnectionPayload) payload;
+                out.writeString(cp.getClientName());
+                out.write((cp.isAway() ? 1 : 0) | (cp.isSpectator() ? 2 : 0));
+                break;
+            case READY:
+                out.write(((ReadyPayload) payload).isReady() ? 1 : 0);
+                break;
+            case POINTS:
+                out.writeSigned(((PointsPayload) payload).getPoints());
+                break;
+            case TIMER:
+                TimerPayload tp = (TimerPayload) payload;
+                out.writeSigned(tp.getTime());
+                out.writeVarLong(tp.getTimerType() == null ? 0 : tp.getTimerType().ordinal() + 1);
+                out.writeVarLong(tp.getDeadline());
+                out.writeVarLong(tp.getServerTime());
+                break;
+            case ROOM_RESULT:
+                out.writeStrings(((RoomResultPayload) payload).getRooms());
+                break;
+            case ROOM_DIRECTORY:
+                RoomDirectoryPayload rdp = (RoomDirectoryPayload) payload;
+                out.writeString(rdp.getCursor());
+                out.writeSigned(rdp.getLimit());
+                out.writeRoomInfos(rdp.getRooms());
+                break;
+            case ROOM_DIRECTORY_DELTA:
+                RoomDirectoryDeltaPayload delta = (RoomDirectoryDeltaPayload) payload;
+                out.writeRoomInfos(delta.getUpdated());
+                out.writeStrings(delta.getRemoved());
+                break;
+            case ROOM_SNAPSHOT:
+                RoomSnapshotPayload snapshot = (RoomSnapshotPayload) payload;
+                out.writeSigned(snapshot.getHostId());
+                out.writeVarLong(snapshot.getPhase() == null ? 0 : snapshot.getPhase().ordinal() + 1);
+                out.writeMembers(snapshot.getMembers());
+                out.writeSettings(snapshot.getSettings());
+                break;
+            case ROOM_MEMBERSHIP:
+                RoomMembershipPayload membership = (RoomMembershipPayload) payload;
+                out.writeSigned(membership.getHostId());
+                out.writeMembers(membership.getJoined());
+                out.writeMembers(membership.getLeft());
+                out.writeMembers(membership.getDisconnected());
+                break;
+            case SCOREBOARD:
+                out.writeScoreboard((ScoreboardPayload) payload);
+                break;
+            case ROUND_STATE:
+                RoundStatePayload roundState = (RoundStatePayload) payload;
+                out.writeScoreboard(roundState);
+                out.writeVarLong(roundState.getRound());
+                out.writeVarLong(roundState.getDeadline());
+                out.writeVarLong(roundState.getServerTime());
+                out.writeBattles(roundState.getBattles());
+                out.writeLongs(roundState.getNoPick());
+                out.writeLongs(roundState.getEliminated());
+                out.writeCounts(roundState.getChoiceCounts());
+                break;
+            default:
+                break;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a frame body back into a Payload
+     *
+     * @param body
+     * @param offset
+     * @param length
+     * @return the decoded Payload
+     * @throws StreamCorruptedException if the body is malformed
+     */
+    public static Payload decode(byte[] body, int offset, int length) throws StreamCorruptedException {
+        ByteBuffer in = ByteBuffer.wrap(body, offset, length);
+        try {
+            byte tag = in.get();
+            Payload payload;
+            switch (tag) {
+                case PAYLOAD:
+                    payload = new Payload();
+                    break;
+                case CONNECTION:
+                    payload = new ConnectionPayload();
+                    break;
+                case READY:
+                    payload = new ReadyPayload();
+                    break;
+                case POINTS:
+                    payload = new PointsPayload();
+                    break;
+                case TIMER:
+                    payload = new TimerPayload();
+                    break;
+                case ROOM_RESULT:
+                    payload = new RoomResultPayload();
+                    break;
+                case ROOM_DIRECTORY:
+                    payload = new RoomDirectoryPayload();
+                    break;
+                case ROOM_DIRECTORY_DELTA:
+                    payload = new RoomDirectoryDeltaPayload();
+                    break;
+                case ROOM_SNAPSHOT:
+                    payload = new RoomSnapshotPayload();
+                    break;
+                case ROOM_MEMBERSHIP:
+                    payload = new RoomMembershipPayload();
+                    break;
+                case SCOREBOARD:
+                    payload = new ScoreboardPayload();
+                    break;
+                case ROUND_STATE:
+                    payload = new RoundStatePayload();
+                    break;
+                default:
+                    throw new StreamCorruptedException("Unknown payload tag " + tag);
+            }
+            payload.setPayloadType(readEnum(in, PAYLOAD_TYPES));
+            payload.setClientId(readSigned(in));
+            payload.setMessage(readString(in));
+            switch (tag) {
+                case CONNECTION:
+                    ConnectionPayload cp = (ConnectionPayload) payload;
+                    cp.setClientName(readString(in));
+                    byte flags = in.get();
+                    cp.setAway((flags & 1) != 0);
+                    cp.setSpectator((flags & 2) != 0);
+                    break;
+                case READY:
+                    ((ReadyPayload) payload).setReady(in.get() != 0);
+                    break;
+                case POINTS:
+                    ((PointsPayload) payload).setPoints((int) readSigned(in));
+                    break;
+                case TIMER:
+                    TimerPayload tp = (TimerPayload) payload;
+                    tp.setTime((int) readSigned(in));
+                    tp.setTimerType(readEnum(in, TIMER_TYPES));
+                    tp.setDeadline(readVarLong(in));
+                    tp.setServerTime(readVarLong(in));
+                    break;
+                case ROOM_RESULT:
+                    ((RoomResultPayload) payload).setRooms(readStrings(in));
+                    break;
+                case ROOM_DIRECTORY:
+                    RoomDirectoryPayload rdp = (RoomDirectoryPayload) payload;
+                    rdp.setCursor(readString(in));
+                    rdp.setLimit((int) readSigned(in));
+                    rdp.setRooms(readRoomInfos(in));
+                    break;
+                case ROOM_DIRECTORY_DELTA:
+                    RoomDirectoryDeltaPayload delta = (RoomDirectoryDeltaPayload) payload;
+                    delta.setUpdated(readRoomInfos(in));
+                    delta.setRemoved(readStrings(in));
+                    break;
+                case ROOM_SNAPSHOT:
+                    RoomSnapshotPayload snapshot = (RoomSnapshotPayload) payload;
+                    snapshot.setHostId(readSigned(in));
+                    snapshot.setPhase(readEnum(in, PHASES));
+                    snapshot.setMembers(readMembers(in));
+                    snapshot.setSettings(readSettings(in));
+                    break;
+                case ROOM_MEMBERSHIP:
+                    RoomMembershipPayload membership = (RoomMembershipPayload) payload;
+                    membership.setHostId(readSigned(in));
+                    membership.setJoined(readMembers(in));
+                    membership.setLeft(readMembers(in));
+                    membership.setDisconnected(readMembers(in));
+                    break;
+                case SCOREBOARD:
+                    readScoreboard(in, (ScoreboardPayload) payload);
+                    break;
+                case ROUND_STATE:
+                    RoundStatePayload roundState = (RoundStatePayload) payload;
+                    readScoreboard(in, roundState);
+                    roundState.setRound((int) readVarLong(in));
+                    roundState.setDeadline(readVarLong(in));
+                    roundState.setServerTime(readVarLong(in));
+                    roundState.setBattles(readBattles(in));
+                    roundState.setNoPick(readLongs(in));
+                    roundState.setEliminated(readLongs(in));
+                    roundState.setChoiceCounts(readCounts(in));
+                    break;
+                default:
+                    break;
+            }
+            if (in.hasRemaining()) {
+                throw new StreamCorruptedException(in.remaining() + " unexpected trailing bytes");
+            }
+            return payload;
+        } catch (BufferUnderflowException e) {
+            throw new StreamCorruptedException("Truncated payload");
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package Project.Common;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Offline reader for the segments written by {@link BinaryLogHandler}; prints
+ * them in the same layout as the text log or filters/summarizes them.
+ * <p>
+ * Usage:
+ * <code>java Project.Common.BinaryLogDecoder [--level LEVEL] [--category TEXT] [--grep TEXT] [--stats] FILE...</code>
+ * <br>
+ * Files are read oldest segment first (by their header's start time). A
+ * segment that's still open (or was never closed because the server was
+ * killed) is read up to its last flush.
+ * </p>
+ */
+public class BinaryLogDecoder {
+    private static final String PATTERN = "MM/dd/yyyy HH:mm:ss";
+
+    /**
+     * One decoded record
+     */
+    public static class Entry {
+        private final long millis;
+        private final Level level;
+        private final String category;
+        private final String template;
+        private final long threadId;
+        private final Object[] args;
+        private final String thrown;
+
+        private Entry(long millis, Level level, String category, String template, long threadId, Object[] args,
+                String thrown) {
+            this.millis = millis;
+            this.level = level;
+            this.category = category;
+            this.template = template;
+            this.threadId = threadId;
+            this.args = args;
+            this.thrown = thrown;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+
+        /**
+         * @return the exception's stack trace or null
+         */
+        public String getThrown() {
+            return thrown;
+        }
+
+        /**
+         * @return the template filled in with the args
+         */
+        public String getMessage() {
+            try {
+                return String.format(template, args);
+            } catch (IllegalFormatException e) {
+                return template + " " + Arrays.toString(args);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s] (%s):\n> %s%s", new SimpleDateFormat(PATTERN).format(new Date(millis)),
+                    category, level, getMessage(), thrown == null ? "" : "\n" + thrown);
+        }
+    }
+
+    /**
+     * Receives each decoded record
+     */
+    public interface EntryListener {
+        void onEntry(Entry entry);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private static long readSigned(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid length " + length);
+        }
+        byte[] bytes = new byte[(int) length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object readArg(DataInputStream in, byte tag) throws IOException {
+        switch (tag) {
+            case BinaryLogHandler.NULL:
+                return null;
+            case BinaryLogHandler.INT:
+                return (int) readSigned(in);
+            case BinaryLogHandler.LONG:
+                return readSigned(in);
+            case BinaryLogHandler.DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case BinaryLogHandler.FALSE:
+                return false;
+            case BinaryLogHandler.TRUE:
+                return true;
+            case BinaryLogHandler.STRING:
+                return readString(in);
+            default:
+                throw new StreamCorruptedException("Unknown argument tag " + tag);
+        }
+    }
+
+    /**
+     * @param file
+     * @return the segment's start time, or -1 if it isn't a binary log
+     */
+    public static long readStart(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != BinaryLogHandler.MAGIC || in.readByte() != BinaryLogHandler.VERSION) {
+                return -1;
+            }
+            return readVarLong(in);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Decodes one segment
+     *
+     * @param stream   the segment, from its header
+     * @param listener gets each record in order
+     * @return false if the segment wasn't closed (the server is still writing
+     *         it or was killed), everything flushed before that is read
+     */
+    public static boolean decode(InputStream stream, EntryListener listener) throws IOException {
+        DataInputStream header = new DataInputStream(stream); // unbuffered, the entries start right after it
+        if (header.readInt() != BinaryLogHandler.MAGIC) {
+            throw new StreamCorruptedException("Not a binary log");
+        }
+        byte version = header.readByte();
+        if (version != BinaryLogHandler.VERSION) {
+            throw new StreamCorruptedException("Unsupported binary log version " + version);
+        }
+        long millis = readVarLong(header);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(stream)));
+        List<String> categories = new ArrayList<>();
+        List<String> templates = new ArrayList<>();
+        while (true) {
+            try {
+                int kind = in.read();
+                if (kind < 0) {
+                    return true;
+                }
+                switch (kind) {
+                    case BinaryLogHandler.CATEGORY:
+                    case BinaryLogHandler.TEMPLATE: {
+                        List<String> ids = kind == BinaryLogHandler.CATEGORY ? categories : templates;
+                        long id = readVarLong(in);
+                        if (id != ids.size()) {
+                            throw new StreamCorruptedException("Out of order id " + id);
+                        }
+                        ids.add(readString(in));
+                        break;
+                    }
+                    case BinaryLogHandler.RECORD: {
+                        millis += readSigned(in);
+                        Level level = Level.parse(String.valueOf(readSigned(in)));
+                        int category = (int) readVarLong(in);
+                        int template = (int) readVarLong(in);
+                        long threadId = readVarLong(in);
+                        int argc = (int) readVarLong(in);
+                        List<Object> args = new ArrayList<>(argc);
+                        String thrown = null;
+                        for (int i = 0; i < argc; i++) {
+                            byte tag = in.readByte();
+                            if (tag == BinaryLogHandler.THROWN) {
+                                thrown = readString(in);
+                            } else {
+                                args.add(readArg(in, tag));
+                            }
+                        }
+                        if (category > categories.size() || template >= templates.size()) {
+                            throw new StreamCorruptedException("Undefined category or template id");
+                        }
+                        listener.onEntry(new Entry(millis, level, category == 0 ? "unknown"
+                                : categories.get(category - 1), templates.get(template), threadId, args.toArray(),
+                                thrown));
+                        break;
+                    }
+                    default:
+                        throw new StreamCorruptedException("Unknown entry kind " + kind);
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Pretty-prints or summarizes binary log segments
+     *
+     * @param args options and files, see the class description
+     */
+    public static void main(String[] args) throws IOException {
+        Level minLevel = Level.ALL;
+        String category = null;
+        String grep = null;
+        boolean isStats = false;
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--level":
+                    minLevel = Level.parse(args[++i].toUpperCase());
+                    break;
+                case "--category":
+                    category = args[++i];
+                    break;
+                case "--grep":
+                    grep = args[++i];
+                    break;
+                case "--stats":
+                    isStats = true;
+                    break;
+                default:
+                    files.add(new File(args[i]));
+                    break;
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println(
+                    "Usage: BinaryLogDecoder [--level LEVEL] [--category TEXT] [--grep TEXT] [--stats] FILE...");
+            System.exit(1);
+        }
+        files.removeIf(file -> {
+            if (readStart(file) < 0) {
+                System.err.println(String.format("Skipping %s, not a binary log", file));
+                return true;
+            }
+            return false;
+        });
+        files.sort(Comparator.comparingLong(BinaryLogDecoder::readStart));
+
+        final int min = minLevel.intValue();
+        final String categoryFilter = category;
+        final String grepFilter = grep;
+        final boolean stats = isStats;
+        long[] counts = new long[2]; // matched, total
+        Map<String, long[]> byTemplate = new TreeMap<>();
+        for (File file : files) {
+            boolean complete;
+            try (InputStream in = new FileInputStream(file)) {
+                complete = decode(in, entry -> {
+                    counts[1]++;
+                    if (entry.getLevel().intValue() < min
+                            || (categoryFilter != null && !entry.getCategory().contains(categoryFilter))) {
+                        return;
+                    }
+                    if (grepFilter != null && !entry.getMessage().contains(grepFilter)) {
+                        return;
+                    }
+                    counts[0]++;
+                    if (stats) {
+                        byTemplate.computeIfAbsent(String.format("%s %s", entry.getCategory(), entry.getTemplate()),
+                                key -> new long[1])[0]++;
+                    } else {
+                        System.out.println(entry);
+                    }
+                });
+            }
+            if (!complete) {
+                System.err.println(String.format("%s wasn't closed, read up to its last flush", file));
+            }
+        }
+        if (stats) {
+            byTemplate.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                    .forEach(e -> System.out.println(String.format("%,10d  %s", e.getValue()[0], e.getKey())));
+        }
+        System.err.println(String.format("%,d of %,d records matched in %d segments", counts[0], counts[1],
+                files.size()));
+    }
+}
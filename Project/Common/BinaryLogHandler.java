@@ -0,0 +1,342 @@
+package Project.Common;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Writes log records as compact binary entries instead of formatted text, used
+ * by LoggerUtil when {@link LoggerUtil.LoggerConfig#setBinary(boolean)} is on.
+ * Read them back with {@link BinaryLogDecoder}.
+ * <p>
+ * A record is its time, level, category (the logging class), template (the
+ * format string, or "%s" for a plain message) and typed arguments. Categories
+ * and templates are written once per segment and then referred to by id, so a
+ * trace line costs a few bytes plus its arguments and nothing is formatted or
+ * colored on the way out.
+ * </p>
+ * <p>
+ * Segments rotate like FileHandler's ("server-0.rlog" is the newest) and each
+ * starts with its own header and definitions so it can be decoded on its own.
+ * After the header, a segment's entries are deflated (flushed with
+ * SYNC_FLUSH, so everything flushed can be read back even if the server is
+ * killed); repeated args like payload descriptions compress well. Numbers
+ * are varints (zigzag for signed values) and Strings are a varint length + 1
+ * (0 means null) followed by UTF-8 bytes, the same as {@link BinaryCodec}.
+ * </p>
+ * <p>
+ * Note: Records are flushed at most {@link #FLUSH_MILLIS} after they're
+ * written (right away if they're more severe than INFO), even if nothing is
+ * logged after them.
+ * </p>
+ */
+public class BinaryLogHandler extends Handler {
+    static final int MAGIC = 0x52504C47; // "RPLG"
+    static final byte VERSION = 1;
+    // entry kinds
+    static final byte CATEGORY = 1;
+    static final byte TEMPLATE = 2;
+    static final byte RECORD = 3;
+    // argument tags
+    static final byte NULL = 0;
+    static final byte INT = 1; // also short/byte
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3; // also float
+    static final byte FALSE = 4;
+    static final byte TRUE = 5;
+    static final byte STRING = 6; // anything else, as its toString()
+    static final byte THROWN = 7; // the record's exception, as a stack trace
+
+    static final String PLAIN = "%s"; // template of records logged without args
+    private static final int MAX_TEMPLATES = 1 << 16; // starts a new segment past this (dynamic templates)
+    private static final long FLUSH_MILLIS = 1000; // unless something more severe than INFO is logged
+
+    /**
+     * Growable byte buffer with the varint/String helpers, reused for every
+     * entry
+     */
+    private static class Writer extends ByteArrayOutputStream {
+        private Writer() {
+            super(256);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeSigned(long value) {
+            writeVarLong((value << 1) ^ (value >> 63)); // zigzag
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void writeArg(Object arg) {
+            if (arg == null) {
+                write(NULL);
+            } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+                write(INT);
+                writeSigned(((Number) arg).intValue());
+            } else if (arg instanceof Long) {
+                write(LONG);
+                writeSigned((Long) arg);
+            } else if (arg instanceof Double || arg instanceof Float) {
+                write(DOUBLE);
+                long bits = Double.doubleToRawLongBits(((Number) arg).doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    write((int) (bits >>> shift));
+                }
+            } else if (arg instanceof Boolean) {
+                write((Boolean) arg ? TRUE : FALSE);
+            } else {
+                write(STRING);
+                writeString(arg.toString());
+            }
+        }
+    }
+
+    private final String pattern;
+    private final int limit;
+    private final int count;
+    private final int stackTraceLimit;
+    private final Writer entry = new Writer();
+    private final HashMap<String, Integer> categories = new HashMap<>();
+    private final HashMap<String, Integer> templates = new HashMap<>();
+    private OutputStream out;
+    private Deflater deflater;
+    private long headerBytes;
+    private long lastMillis; // deltas are from the previous record in the segment
+    private long lastFlushMillis;
+    private boolean isDirty = false; // written since the last flush
+    private TimerWheel.Timeout flushTimer = null;
+
+    /**
+     * @param pattern         file name with "%g" for the segment number, i.e.,
+     *                        "server-%g.rlog"
+     * @param limit           bytes per segment (compressed) before rotating
+     * @param count           segments kept
+     * @param stackTraceLimit max stack trace elements written per exception
+     * @throws IOException if the first segment can't be opened
+     */
+    public BinaryLogHandler(String pattern, int limit, int count, int stackTraceLimit) throws IOException {
+        if (limit <= 0 || count <= 0) {
+            throw new IllegalArgumentException("Limit and count must be positive");
+        }
+        this.pattern = pattern;
+        this.limit = limit;
+        this.count = count;
+        this.stackTraceLimit = stackTraceLimit;
+        rotate();
+        scheduleFlush();
+    }
+
+    /**
+     * Converts arguments to the types that are written as-is (numbers,
+     * booleans and Strings) so they can be handed to another thread; anything
+     * else becomes its toString() now, while it still has the value being
+     * logged
+     *
+     * @param args changed in place
+     * @return args
+     */
+    public static Object[] snapshot(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg != null && !(arg instanceof String || arg instanceof Integer || arg instanceof Long
+                    || arg instanceof Short || arg instanceof Byte || arg instanceof Double
+                    || arg instanceof Float || arg instanceof Boolean)) {
+                args[i] = arg.toString();
+            }
+        }
+        return args;
+    }
+
+    /**
+     * Checks for an unflushed tail every FLUSH_MILLIS; the flush runs on its
+     * own (virtual) thread since it may wait for a record being written
+     */
+    private void scheduleFlush() {
+        flushTimer = TimerWheel.INSTANCE.schedule(this::flushIfDirty, FLUSH_MILLIS, TimeUnit.MILLISECONDS,
+                flush -> Thread.ofVirtual().name("binary-log-flush").start(flush));
+    }
+
+    private synchronized void flushIfDirty() {
+        if (out == null) {
+            return; // closed
+        }
+        if (isDirty) {
+            flush();
+        }
+        scheduleFlush();
+    }
+
+    private static String segmentName(String pattern, int generation) {
+        return pattern.replace("%g", String.valueOf(generation));
+    }
+
+    /**
+     * Closes the current segment, shifts older ones up (dropping the oldest)
+     * and starts a new "-0" segment
+     */
+    private void rotate() throws IOException {
+        if (out != null) {
+            out.close();
+            deflater.end();
+        }
+        for (int generation = count - 2; generation >= 0; generation--) {
+            File older = new File(segmentName(pattern, generation));
+            if (older.exists()) {
+                File newer = new File(segmentName(pattern, generation + 1));
+                newer.delete();
+                older.renameTo(newer);
+            }
+        }
+        FileOutputStream file = new FileOutputStream(segmentName(pattern, 0));
+        categories.clear();
+        templates.clear();
+        lastMillis = System.currentTimeMillis();
+        entry.reset();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            entry.write(MAGIC >>> shift);
+        }
+        entry.write(VERSION);
+        entry.writeVarLong(lastMillis); // segment start, record times are deltas from here
+        entry.writeTo(file);
+        headerBytes = entry.size();
+        entry.reset();
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        out = new BufferedOutputStream(new DeflaterOutputStream(file, deflater, 64 * 1024, true), 64 * 1024);
+    }
+
+    private void emit() throws IOException {
+        entry.writeTo(out);
+        entry.reset();
+    }
+
+    /**
+     * @return the id of the name, defining it first if it's new to this
+     *         segment
+     */
+    private int intern(HashMap<String, Integer> ids, byte kind, String name) throws IOException {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = ids.size();
+            ids.put(name, id);
+            entry.write(kind);
+            entry.writeVarLong(id);
+            entry.writeString(name);
+            emit();
+        }
+        return id;
+    }
+
+    @Override
+    public synchronized void publish(LogRecord record) {
+        if (out == null || !isLoggable(record)) {
+            return;
+        }
+        try {
+            if (headerBytes + deflater.getBytesWritten() >= limit || templates.size() >= MAX_TEMPLATES) {
+                rotate();
+            }
+            String source = record.getSourceClassName();
+            int category = source == null ? 0 : intern(categories, CATEGORY, source) + 1; // 0 is unknown
+            Object[] args = record.getParameters();
+            String message = record.getMessage();
+            if (args == null) {
+                args = new Object[] { message }; // plain message
+                message = PLAIN;
+            }
+            int template = intern(templates, TEMPLATE, message == null ? PLAIN : message);
+            long millis = record.getMillis();
+            entry.write(RECORD);
+            entry.writeSigned(millis - lastMillis);
+            entry.writeSigned(record.getLevel().intValue());
+            entry.writeVarLong(category);
+            entry.writeVarLong(template);
+            entry.writeVarLong(record.getLongThreadID());
+            Throwable thrown = record.getThrown();
+            entry.writeVarLong(args.length + (thrown != null ? 1 : 0));
+            for (Object arg : args) {
+                entry.writeArg(arg);
+            }
+            if (thrown != null) {
+                entry.write(THROWN);
+                entry.writeString(stackTraceOf(thrown));
+            }
+            emit();
+            lastMillis = millis;
+            isDirty = true;
+            if (record.getLevel().intValue() > Level.INFO.intValue() || millis - lastFlushMillis >= FLUSH_MILLIS) {
+                flush();
+            }
+        } catch (IOException e) {
+            reportError("Failed to write binary log record", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private String stackTraceOf(Throwable thrown) {
+        StringWriter text = new StringWriter();
+        thrown.printStackTrace(new PrintWriter(text));
+        // keep the header line plus the first stackTraceLimit elements
+        String[] lines = text.toString().split("\\R");
+        int kept = Math.min(lines.length, stackTraceLimit + 1);
+        String trace = String.join("\n", Arrays.copyOf(lines, kept));
+        return kept < lines.length ? trace + "\n\t... " + (lines.length - kept) + " more" : trace;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            lastFlushMillis = System.currentTimeMillis();
+            isDirty = false;
+        } catch (IOException e) {
+            reportError("Failed to flush binary log", e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        flushTimer.cancel();
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError("Failed to close binary log", e, ErrorManager.CLOSE_FAILURE);
+        }
+        deflater.end();
+        out = null;
+    }
+}
@@ -0,0 +1,66 @@
+package Project.Common;
+
+/**
+ * Everything a player can pick. Which ones are allowed and what beats what is
+ * up to the {@link ChoiceRules} in play.
+ * <p>
+ * Note: Sent by ordinal in the binary encoding, only append new constants.
+ * </p>
+ */
+public enum Choice {
+    ROCK("r"),
+    PAPER("p"),
+    SCISSORS("s"),
+    LIZARD("l"),
+    SPOCK("sp");
+
+    private static final Choice[] VALUES = values();
+
+    private final String code; // what clients send and the battle log shows
+
+    private Choice(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Parses a player's pick: an exact code ("sp") or the start of a name
+     * ("spo", "Scissors"), ignoring case
+     *
+     * @param text
+     * @return the choice or null if nothing (or more than one choice) matches
+     */
+    public static Choice fromString(String text) {
+        if (text == null) {
+            return null;
+        }
+        String lowercase = text.trim().toLowerCase();
+        if (lowercase.isEmpty()) {
+            return null;
+        }
+        // codes first, otherwise "s" would be ambiguous between scissors and spock
+        for (Choice choice : VALUES) {
+            if (choice.code.equals(lowercase)) {
+                return choice;
+            }
+        }
+        Choice match = null;
+        for (Choice choice : VALUES) {
+            if (choice.name().toLowerCase().startsWith(lowercase)) {
+                if (match != null) {
+                    return null;
+                }
+                match = choice;
+            }
+        }
+        return match;
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
+}
@@ -0,0 +1,169 @@
+package Project.Common;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A game variant as a small table of which choice beats which, precomputed
+ * into an outcome matrix so resolving a battle is a single array lookup.
+ * <p>
+ * New variants only need their own table, i.e.
+ * <code>new ChoiceRules({ { ROCK, SCISSORS }, ... })</code>; any Choice that
+ * appears in it can be picked.
+ * </p>
+ */
+public class ChoiceRules {
+    // before the variants below, which need it to build their matrix
+    private static final int SIZE = Choice.values().length;
+
+    /**
+     * Classic rock paper scissors
+     */
+    public static final ChoiceRules RPS = new ChoiceRules(new Choice[][] {
+            { Choice.ROCK, Choice.SCISSORS },
+            { Choice.PAPER, Choice.ROCK },
+            { Choice.SCISSORS, Choice.PAPER },
+    });
+
+    /**
+     * Rock paper scissors lizard Spock (RPS-5)
+     */
+    public static final ChoiceRules RPSLS = new ChoiceRules(new Choice[][] {
+            { Choice.ROCK, Choice.SCISSORS, Choice.LIZARD },
+            { Choice.PAPER, Choice.ROCK, Choice.SPOCK },
+            { Choice.SCISSORS, Choice.PAPER, Choice.LIZARD },
+            { Choice.LIZARD, Choice.SPOCK, Choice.PAPER },
+            { Choice.SPOCK, Choice.SCISSORS, Choice.ROCK },
+    });
+
+    // [a][b]: 1 = a wins, -1 = b wins, 0 = tie
+    private final byte[][] outcomes = new byte[SIZE][SIZE];
+    private final Set<Choice> choices = EnumSet.noneOf(Choice.class);
+
+    /**
+     * @param beats one row per choice: the choice followed by every choice it
+     *              beats
+     * @throws IllegalArgumentException if two choices beat each other
+     */
+    public ChoiceRules(Choice[][] beats) {
+        for (Choice[] row : beats) {
+            Choice winner = row[0];
+            choices.add(winner);
+            for (int i = 1; i < row.length; i++) {
+                Choice loser = row[i];
+                if (outcomes[loser.ordinal()][winner.ordinal()] == 1) {
+                    throw new IllegalArgumentException(String.format("%s and %s beat each other", winner, loser));
+                }
+                choices.add(loser);
+                outcomes[winner.ordinal()][loser.ordinal()] = 1;
+                outcomes[loser.ordinal()][winner.ordinal()] = -1;
+            }
+        }
+    }
+
+    /**
+     * @param a
+     * @param b
+     * @return 1 if a wins, -1 if b wins, 0 for a tie (or a pairing the table
+     *         doesn't cover)
+     */
+    public int compare(Choice a, Choice b) {
+        return outcomes[a.ordinal()][b.ordinal()];
+    }
+
+    /**
+     * @param choice
+     * @return true if the choice can be picked under these rules
+     */
+    public boolean allows(Choice choice) {
+        return choices.contains(choice);
+    }
+
+    public Set<Choice> getChoices() {
+        return Collections.unmodifiableSet(choices);
+    }
+
+    /**
+     * Settles a whole round from how many players picked each choice, as if
+     * every player battled every other one: a choice's net is the number of
+     * players it beats minus the number that beat it
+     *
+     * @param counts players per choice, indexed by ordinal
+     * @return net wins per choice, indexed by ordinal
+     */
+    public int[] net(int[] counts) {
+        int[] net = new int[SIZE];
+        for (int a = 0; a < SIZE; a++) {
+            if (counts[a] == 0) {
+                continue;
+            }
+            for (int b = 0; b < SIZE; b++) {
+                net[a] += outcomes[a][b] * counts[b];
+            }
+        }
+        return net;
+    }
+
+    /**
+     * @param counts players per choice, indexed by ordinal
+     * @return the tally line, i.e. "3 picked r (won), 5 picked s (lost)"
+     */
+    public String formatTally(int[] counts) {
+        int[] net = net(counts);
+        StringBuilder tally = new StringBuilder();
+        for (Choice choice : Choice.values()) {
+            int count = counts[choice.ordinal()];
+            if (count == 0) {
+                continue;
+            }
+            int result = net[choice.ordinal()];
+            tally.append(tally.length() == 0 ? "" : ", ").append(String.format("%d picked %s (%s)", count,
+                    choice.getCode(), result > 0 ? "won" : result < 0 ? "lost" : "tie"));
+        }
+        return tally.toString();
+    }
+
+    /**
+     * This is just for testing/demo; times settling a round of random picks
+     * from the counts
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Random random = new Random(42);
+        Choice[] picks = new Choice[players];
+        Choice[] values = Choice.values();
+        for (int i = 0; i < players; i++) {
+            picks[i] = values[random.nextInt(values.length)];
+        }
+        int iterations = 1000;
+        int[] counts = null;
+        int eliminated = 0;
+        for (int pass = 0; pass < 2; pass++) { // first pass warms up
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                counts = new int[SIZE];
+                for (Choice pick : picks) {
+                    counts[pick.ordinal()]++;
+                }
+                int[] net = RPSLS.net(counts);
+                eliminated = 0;
+                for (Choice pick : picks) {
+                    if (net[pick.ordinal()] < 0) {
+                        eliminated++;
+                    }
+                }
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / iterations;
+            if (pass == 1) {
+                System.out.println(String.format("%d players settled in %dus, %d eliminated", players, micros,
+                        eliminated));
+            }
+        }
+        System.out.println(RPSLS.formatTally(counts));
+    }
+}
@@ -0,0 +1,308 @@
+package Project.Common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Length-prefixed framing shared by the Client and the Server transports.
+ * <p>
+ * A framed connection starts with a 4 byte handshake sent by the Client,
+ * followed by frames of <code>[int length][body]</code> in both directions
+ * where each body holds exactly one Payload.
+ * </p>
+ * <p>
+ * The last byte of the handshake picks the body encoding for the whole
+ * connection: {@link #VERSION_SERIALIZED} bodies are Java serialized, while
+ * {@link #VERSION_BINARY} bodies use the compact BinaryCodec.
+ * </p>
+ * <p>
+ * Note: A client using a raw ObjectOutputStream begins with 0xACED instead,
+ * which is how the Server tells both kinds of connection apart.
+ * </p>
+ */
+public abstract class FrameCodec {
+    /**
+     * "RPS" followed by the protocol version
+     */
+    public static final int MAGIC = 0x52505300;
+    public static final int VERSION_SERIALIZED = 1;
+    public static final int VERSION_BINARY = 2;
+    public static final int CURRENT_VERSION = VERSION_BINARY;
+    public static final int HEADER_LENGTH = 4;
+    public static final int LENGTH_PREFIX = 4;
+    public static final int MAX_FRAME_LENGTH = 1024 * 1024; // 1MB
+
+    /**
+     * Checks if the first 4 bytes of a connection are a framed handshake
+     *
+     * @param header
+     * @return true if the client speaks a supported version of the framed
+     *         protocol
+     */
+    public static boolean isHandshake(int header) {
+        return getVersion(header) > 0;
+    }
+
+    /**
+     * @param header the first 4 bytes of a connection
+     * @return the requested protocol version or -1 if the header isn't a
+     *         supported handshake
+     */
+    public static int getVersion(int header) {
+        if ((header & 0xFFFFFF00) != MAGIC) {
+            return -1;
+        }
+        int version = header & 0xFF;
+        return version == VERSION_SERIALIZED || version == VERSION_BINARY ? version : -1;
+    }
+
+    /**
+     * @param version
+     * @return readable name of a protocol version for logs
+     */
+    public static String describe(int version) {
+        switch (version) {
+            case VERSION_SERIALIZED:
+                return "framed (serialized)";
+            case VERSION_BINARY:
+                return "framed (binary)";
+            default:
+                return "object stream";
+        }
+    }
+
+    /**
+     * Writes the handshake that opens a framed connection using the current
+     * version
+     *
+     * @param out
+     * @throws IOException
+     */
+    public static void writeHandshake(DataOutputStream out) throws IOException {
+        writeHandshake(out, CURRENT_VERSION);
+    }
+
+    /**
+     * Writes the handshake that opens a framed connection
+     *
+     * @param out
+     * @param version body encoding to use for the connection
+     * @throws IOException
+     */
+    public static void writeHandshake(DataOutputStream out, int version) throws IOException {
+        out.writeInt(MAGIC | version);
+        out.flush();
+    }
+
+    /**
+     * Encodes a single Payload into a standalone frame body
+     *
+     * @param payload
+     * @param version
+     * @return the body bytes (without the length prefix)
+     * @throws IOException
+     */
+    public static byte[] encodeBody(Payload payload, int version) throws IOException {
+        if (version == VERSION_BINARY) {
+            return BinaryCodec.encode(payload);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a frame body back into a Payload
+     *
+     * @param body
+     * @param offset
+     * @param length
+     * @param version
+     * @return the decoded Payload
+     * @throws IOException
+     */
+    public static Payload decodeBody(byte[] body, int offset, int length, int version) throws IOException {
+        if (version == VERSION_BINARY) {
+            return BinaryCodec.decode(body, offset, length);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body, offset, length))) {
+            return (Payload) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new StreamCorruptedException("Frame didn't contain a Payload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes a Payload as a complete frame ready to be written to a channel
+     *
+     * @param payload
+     * @param version
+     * @return a ByteBuffer positioned at 0 containing [length][body]
+     * @throws IOException
+     */
+    public static ByteBuffer encodeFrame(Payload payload, int version) throws IOException {
+        byte[] body = encodeBody(payload, version);
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_PREFIX + body.length);
+        frame.putInt(body.length);
+        frame.put(body);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Validates a length prefix read from the wire
+     *
+     * @param length
+     * @throws StreamCorruptedException if the length is out of bounds
+     */
+    public static void checkLength(int length) throws StreamCorruptedException {
+        if (length <= 0 || length > MAX_FRAME_LENGTH) {
+            throw new StreamCorruptedException("Invalid frame length " + length);
+        }
+    }
+
+    /**
+     * Blocking write of a single frame
+     *
+     * @param out
+     * @param payload
+     * @param version
+     * @throws IOException
+     */
+    public static void writeFrame(DataOutputStream out, Payload payload, int version) throws IOException {
+        writeFrame(out, payload, version, true);
+    }
+
+    /**
+     * Blocking write of a single frame
+     *
+     * @param out
+     * @param payload
+     * @param version
+     * @param flush   false to let the caller batch several frames per flush
+     * @throws IOException
+     */
+    public static void writeFrame(DataOutputStream out, Payload payload, int version, boolean flush)
+            throws IOException {
+        byte[] body = encodeBody(payload, version);
+        out.writeInt(body.length);
+        out.write(body);
+        if (flush) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Blocking read of a single frame
+     *
+     * @param in
+     * @param version
+     * @return the decoded Payload
+     * @throws IOException
+     */
+    public static Payload readFrame(DataInputStream in, int version) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decodeBody(body, 0, length, version);
+    }
+
+    /**
+     * Compares both encodings for a sample of every Payload class (size and
+     * encode + decode time) and checks that each one round trips
+     */
+    public static void main(String[] args) throws IOException {
+        ConnectionPayload connect = new ConnectionPayload();
+        connect.setPayloadType(PayloadType.CLIENT_CONNECT);
+        connect.setClientId(12);
+        connect.setClientName("Player One");
+        connect.setAway(true);
+        Payload message = new Payload();
+        message.setPayloadType(PayloadType.MESSAGE);
+        message.setClientId(12);
+        message.setMessage("hello everyone");
+        ReadyPayload ready = new ReadyPayload();
+        ready.setClientId(12);
+        ready.setReady(true);
+        PointsPayload points = new PointsPayload();
+        points.setClientId(12);
+        points.setPoints(-3);
+        TimerPayload timer = new TimerPayload();
+        timer.setTimerType(TimerType.ROUND);
+        timer.setTime(30);
+        RoomResultPayload rooms = new RoomResultPayload();
+        rooms.setRooms(List.of("lobby", "room 1", "room 2"));
+        RoomDirectoryPayload directory = new RoomDirectoryPayload();
+        directory.setCursor("room 2");
+        directory.setLimit(10);
+        directory.setRooms(List.of(new RoomInfo("room 3", 2, Phase.IN_PROGRESS, "Player One"),
+                new RoomInfo("room 4", 0, Phase.READY, null)));
+        RoomDirectoryDeltaPayload delta = new RoomDirectoryDeltaPayload();
+        delta.setUpdated(List.of(new RoomInfo("room 5", 1, Phase.READY, "Player One")));
+        delta.setRemoved(List.of("room 3"));
+        RoomSnapshotPayload snapshot = new RoomSnapshotPayload();
+        snapshot.setMessage("room 5");
+        snapshot.setHostId(12);
+        snapshot.setPhase(Phase.IN_PROGRESS);
+        snapshot.setMembers(List.of(new MemberInfo(12, "Player One", true, false, true, 3),
+                new MemberInfo(13, "Player Two", true, true, false, 1)));
+        snapshot.getSettings().put("rps5", "on");
+        snapshot.getSettings().put("cooldown", "off");
+        RoomMembershipPayload membership = new RoomMembershipPayload();
+        membership.setMessage("room 5");
+        membership.setHostId(13);
+        membership.setJoined(List.of(new MemberInfo(14, "Player Three", false, false, false, 0)));
+        membership.setLeft(List.of(new MemberInfo(12, "Player One", true, false, true, 3)));
+        ScoreboardPayload scoreboard = new ScoreboardPayload();
+        scoreboard.setClientIds(new long[] { 12, 13, 14 });
+        scoreboard.setPoints(new int[] { 3, 1, 0 });
+        RoundStatePayload roundState = new RoundStatePayload();
+        roundState.setClientIds(new long[] { 12, 13 });
+        roundState.setPoints(new int[] { 4, 1 });
+        roundState.setDelta(true);
+        roundState.setRound(3);
+        roundState.setDeadline(System.currentTimeMillis() + 30000);
+        roundState.setServerTime(System.currentTimeMillis());
+        roundState.setBattles(List.of(new BattleResult(12, Choice.ROCK, 13, Choice.SCISSORS, 1),
+                new BattleResult(13, Choice.SPOCK, 14, Choice.SPOCK, 0)));
+        roundState.setEliminated(new long[] { 13 });
+        RoundStatePayload massRound = new RoundStatePayload();
+        massRound.setRound(4);
+        massRound.setServerTime(System.currentTimeMillis());
+        massRound.setBattles(null);
+        massRound.setChoiceCounts(new int[] { 3120, 2980, 3900, 0, 0 });
+        massRound.setMessage("Game Over! It's a Tie (No survivors)");
+        Payload[] samples = { connect, message, ready, points, timer, rooms, directory, delta, snapshot,
+                membership, scoreboard, roundState, massRound };
+        int iterations = 20000;
+        for (Payload sample : samples) {
+            for (int version : new int[] { VERSION_SERIALIZED, VERSION_BINARY }) {
+                byte[] body = encodeBody(sample, version);
+                Payload decoded = decodeBody(body, 0, body.length, version);
+                if (!decoded.toString().equals(sample.toString())) {
+                    throw new IllegalStateException("Round trip mismatch: " + decoded + " vs " + sample);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    body = encodeBody(sample, version);
+                    decodeBody(body, 0, body.length, version);
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.println(String.format("%-18s %-20s %4d bytes %8.0f ns/round trip",
+                        sample.getClass().getSimpleName(), describe(version), body.length,
+                        elapsed / (double) iterations));
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package Project.Common;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Limits how often one log call site writes, so per-payload traces can stay on
+ * under load. Get one from {@link LoggerUtil#limiter(Class, String)} and keep
+ * it in a static field next to the call it guards.
+ * <p>
+ * A limit is "1/N" (keep 1 in N records), "K/s" (at most K per second, a token
+ * bucket holding up to a second's worth) or both ("1/10,500/s"); "off" means
+ * unlimited. Limits come from {@link LoggerUtil.LoggerConfig#setLimit} by
+ * category: the most specific of "class#site", the class name or one of its
+ * packages wins. Call sites without a configured limit aren't limited.
+ * </p>
+ * <p>
+ * Note: Skipped records are counted and the next record that's written says
+ * how many were suppressed since the previous one, see
+ * {@link #withSuppressed(String)}.
+ * </p>
+ */
+public class LogLimiter {
+    private static final Limit UNLIMITED = new Limit(1, 0);
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // appended to the format of the next record written after some were skipped
+    static final String SUPPRESSED = " (%d similar suppressed)";
+
+    /**
+     * A parsed limit spec
+     */
+    public static final class Limit {
+        private final long sampleEvery; // 1 keeps everything
+        private final long intervalNanos; // 0 is unlimited, otherwise nanos per record
+
+        private Limit(long sampleEvery, long intervalNanos) {
+            this.sampleEvery = sampleEvery;
+            this.intervalNanos = intervalNanos;
+        }
+
+        /**
+         * @param spec i.e., "1/100", "50/s", "1/10,500/s" or "off"
+         * @return the parsed limit
+         * @throws IllegalArgumentException if the spec isn't valid
+         */
+        public static Limit parse(String spec) {
+            long sampleEvery = 1;
+            long intervalNanos = 0;
+            for (String part : spec.trim().toLowerCase().split(",")) {
+                part = part.trim();
+                if (part.equals("off")) {
+                    continue;
+                }
+                String[] fraction = part.split("/");
+                try {
+                    if (fraction.length == 2 && fraction[1].equals("s")) {
+                        long perSecond = Long.parseLong(fraction[0]);
+                        if (perSecond <= 0) {
+                            throw new IllegalArgumentException("Rate must be positive: " + spec);
+                        }
+                        intervalNanos = Math.max(1, SECOND_NANOS / perSecond);
+                    } else if (fraction.length == 2 && fraction[0].equals("1")) {
+                        sampleEvery = Long.parseLong(fraction[1]);
+                        if (sampleEvery <= 0) {
+                            throw new IllegalArgumentException("Sample rate must be positive: " + spec);
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Expected 1/N, K/s or off: " + spec);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Expected 1/N, K/s or off: " + spec, e);
+                }
+            }
+            return new Limit(sampleEvery, intervalNanos);
+        }
+
+        @Override
+        public String toString() {
+            if (sampleEvery == 1 && intervalNanos == 0) {
+                return "off";
+            }
+            String sample = sampleEvery > 1 ? "1/" + sampleEvery : null;
+            String rate = intervalNanos > 0 ? (SECOND_NANOS / intervalNanos) + "/s" : null;
+            return sample == null ? rate : rate == null ? sample : sample + "," + rate;
+        }
+    }
+
+    private final String category;
+    private final String site;
+    private volatile Limit limit = null; // resolved on first use, once the config is set
+    private final AtomicLong seen = new AtomicLong(0);
+    // token bucket as a "theoretical arrival time": the next record is allowed
+    // once now is within a second of it
+    private final AtomicLong nextAllowedNanos = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong suppressed = new AtomicLong(0);
+    private final AtomicLong totalSuppressed = new AtomicLong(0);
+
+    LogLimiter(String category, String site) {
+        this.category = category;
+        this.site = site;
+    }
+
+    /**
+     * Finds the most specific limit for a call site
+     *
+     * @param limits   configured limits keyed by category
+     * @param category the class doing the logging
+     * @param site     names the call within that class
+     * @return the limit or an unlimited one if nothing matches
+     */
+    static Limit resolve(Map<String, Limit> limits, String category, String site) {
+        Limit limit = limits.get(category + "#" + site);
+        String key = category;
+        while (limit == null && !key.isEmpty()) {
+            limit = limits.get(key);
+            int dot = key.lastIndexOf('.');
+            key = dot < 0 ? "" : key.substring(0, dot);
+        }
+        return limit != null ? limit : UNLIMITED;
+    }
+
+    public String getKey() {
+        return category + "#" + site;
+    }
+
+    /**
+     * Checks the limit for one record; the caller should skip building and
+     * logging it if this returns false
+     *
+     * @return true if the record should be written
+     */
+    public boolean tryAcquire() {
+        Limit current = limit;
+        if (current == null) {
+            current = resolve(LoggerUtil.INSTANCE.getLimits(), category, site);
+            limit = current;
+        }
+        if (current.sampleEvery > 1 && seen.getAndIncrement() % current.sampleEvery != 0) {
+            return suppress();
+        }
+        if (current.intervalNanos > 0) {
+            long now = System.nanoTime();
+            while (true) {
+                long next = nextAllowedNanos.get();
+                long start = next == Long.MIN_VALUE || next - now < 0 ? now : next;
+                if (start - now > SECOND_NANOS - current.intervalNanos) {
+                    return suppress(); // bucket's empty
+                }
+                if (nextAllowedNanos.compareAndSet(next, start + current.intervalNanos)) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean suppress() {
+        suppressed.incrementAndGet();
+        totalSuppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Notes how many records were skipped since the last one written
+     *
+     * @param message the record that's being written
+     * @return the message, with the suppressed count appended if any were
+     *         skipped
+     */
+    public String withSuppressed(String message) {
+        long count = takeSuppressed();
+        return count == 0 ? message : String.format("%s" + SUPPRESSED, message, count);
+    }
+
+    /**
+     * @return how many records were skipped since the last call, resetting
+     *         the count
+     */
+    public long takeSuppressed() {
+        return suppressed.get() == 0 ? 0 : suppressed.getAndSet(0);
+    }
+
+    public long getTotalSuppressed() {
+        return totalSuppressed.get();
+    }
+
+    @Override
+    public String toString() {
+        Limit current = limit;
+        return String.format("%s limit=%s suppressed=%d", getKey(), current == null ? "?" : current,
+                totalSuppressed.get());
+    }
+
+    /**
+     * This is just for testing/demo; logs from 4 threads for 2 seconds
+     * through a sampled site and a rate limited site and reports how many
+     * records each let through
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("limiter-demo.log");
+        config.setConsoleLogLevel(Level.OFF);
+        config.setLimit(LogLimiter.class.getName() + "#sampled", "1/1000");
+        config.setLimit(LogLimiter.class.getName() + "#rated", "100/s");
+        LoggerUtil.INSTANCE.setConfig(config);
+        LoggerUtil.ClassLogger log = LoggerUtil.forClass(LogLimiter.class);
+        LogLimiter sampled = LoggerUtil.limiter(LogLimiter.class, "sampled");
+        LogLimiter rated = LoggerUtil.limiter(LogLimiter.class, "rated");
+        AtomicLong attempts = new AtomicLong(0);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    attempts.incrementAndGet();
+                    log.info(sampled, "Sampled record %s", attempts);
+                    log.info(rated, "Rated record %s", attempts);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println(String.format("%,d attempts per site in 2s", attempts.get()));
+        System.out.println(String.format("sampled: %,d written (%s)", attempts.get() - sampled.getTotalSuppressed(),
+                sampled));
+        System.out.println(String.format("rated: %,d written (%s)", attempts.get() - rated.getTotalSuppressed(),
+                rated));
+        LoggerUtil.INSTANCE.flush(2, TimeUnit.SECONDS);
+    }
+}
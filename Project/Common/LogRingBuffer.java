@@ -0,0 +1,368 @@
+package Project.Common;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Bounded ring of preallocated log slots between the threads that log and a
+ * single background writer, used by LoggerUtil's async mode.
+ * <p>
+ * Callers only claim a slot and copy the level, message, caller and time into
+ * it; the writer thread builds the record, formats it and writes it out,
+ * flushing once per batch instead of once per line. Claiming is lock-free
+ * (each slot carries the sequence number it's ready for, like a bounded MPMC
+ * queue) so many rooms can log at once without contending on a lock.
+ * </p>
+ * <p>
+ * Note: What happens when the ring is full is up to the
+ * {@link OverflowPolicy}; anything not written is counted and the writer
+ * reports the counts every {@link #REPORT_SECONDS}. The writer parks while
+ * the ring is empty and the next offer wakes it.
+ * </p>
+ */
+public class LogRingBuffer {
+    public static final int REPORT_SECONDS = 10;
+    private static final int MAX_BATCH = 256; // records written between flushes
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50); // BLOCK callers waiting for a slot
+
+    /**
+     * What callers do when the writer can't keep up
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the record if the ring is full
+         */
+        DROP,
+        /**
+         * Wait for a free slot (the caller is slowed down to the writer's pace)
+         */
+        BLOCK,
+        /**
+         * Keep 1 in N records below WARNING once the ring is half full, drop
+         * anything that still doesn't fit
+         */
+        SAMPLE
+    }
+
+    /**
+     * One preallocated entry; its sequence says whether it's free for the
+     * claim with that number (== claim) or holds a record (== claim + 1)
+     */
+    private static final class Slot {
+        private volatile long sequence;
+        private Level level;
+        private String message;
+        private Object[] parameters; // kept for a binary log, already snapshot
+        private Throwable thrown;
+        private String source;
+        private long millis;
+        private long threadId;
+
+        private Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+
+    private final Slot[] slots;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+    private final Consumer<LogRecord> publisher;
+    private final Runnable flusher;
+    private final AtomicLong tail = new AtomicLong(0); // next claim
+    private volatile long head = 0; // next slot the writer reads, only written by the writer
+    // every record before this one has been written and flushed; head moves
+    // first (slots are freed before they're written), this moves after flush()
+    private volatile long flushed = 0;
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong sampledOut = new AtomicLong(0);
+    private final AtomicLong sampleCounter = new AtomicLong(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0); // records the publisher threw on
+    private final Thread writer;
+    // set by the writer before it parks on an empty ring, so offer() knows to
+    // unpark it
+    private volatile boolean isWriterParked = false;
+
+    /**
+     * @param capacity   slots in the ring, rounded up to a power of two
+     * @param policy     what to do when it's full
+     * @param sampleRate 1 in N records kept under pressure with
+     *                   {@link OverflowPolicy#SAMPLE}
+     * @param publisher  formats and writes one record (i.e., to the handlers)
+     * @param flusher    flushes what the publisher wrote, once per batch
+     */
+    public LogRingBuffer(int capacity, OverflowPolicy policy, int sampleRate, Consumer<LogRecord> publisher,
+            Runnable flusher) {
+        if (capacity <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("Capacity and sample rate must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i);
+        }
+        mask = size - 1;
+        this.policy = policy;
+        this.sampleRate = sampleRate;
+        this.publisher = publisher;
+        this.flusher = flusher;
+        writer = new Thread(this::run, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record for the writer thread
+     *
+     * @param level
+     * @param message
+     * @param thrown  may be null
+     * @param source  the class that logged it
+     * @return true if it was queued, false if it was dropped or sampled out
+     */
+    public boolean offer(Level level, String message, Throwable thrown, String source) {
+        return offer(level, message, null, thrown, source);
+    }
+
+    /**
+     * Queues a record for the writer thread
+     *
+     * @param level
+     * @param message    the message or its format
+     * @param parameters the format's args or null; must not change after this
+     *                   (i.e., BinaryLogHandler.snapshot())
+     * @param thrown     may be null
+     * @param source     the class that logged it
+     * @return true if it was queued, false if it was dropped or sampled out
+     */
+    public boolean offer(Level level, String message, Object[] parameters, Throwable thrown, String source) {
+        if (policy == OverflowPolicy.SAMPLE && level.intValue() < Level.WARNING.intValue()
+                && size() > slots.length / 2 && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            sampledOut.incrementAndGet();
+            return false;
+        }
+        while (true) {
+            long claim = tail.get();
+            Slot slot = slots[(int) (claim & mask)];
+            long difference = slot.sequence - claim;
+            if (difference == 0) {
+                if (tail.compareAndSet(claim, claim + 1)) {
+                    slot.level = level;
+                    slot.message = message;
+                    slot.parameters = parameters;
+                    slot.thrown = thrown;
+                    slot.source = source;
+                    slot.millis = System.currentTimeMillis();
+                    slot.threadId = Thread.currentThread().threadId();
+                    slot.sequence = claim + 1; // publish to the writer
+                    if (isWriterParked) {
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+            } else if (difference < 0) { // full, the writer hasn't freed this slot yet
+                // a dead writer will never free it, so BLOCK falls back to dropping
+                if (policy != OverflowPolicy.BLOCK || Thread.currentThread() == writer || !writer.isAlive()) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            // otherwise another thread claimed it first, try the next one
+        }
+    }
+
+    /**
+     * @return records queued and not written yet
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * @return records that failed to be written (the publisher threw)
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Waits for everything queued so far to be written and flushed (i.e.,
+     * during shutdown)
+     *
+     * @param timeout
+     * @param unit
+     * @return true if the ring drained in time
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target = tail.get();
+        while (flushed < target) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private void run() {
+        // reused for every slot; its source class was resolved on the logging thread
+        LogRecord record = new LogRecord(Level.INFO, null);
+        long reportedDropped = 0;
+        long reportedSampledOut = 0;
+        long nextReport = System.nanoTime() + TimeUnit.SECONDS.toNanos(REPORT_SECONDS);
+        while (true) {
+            int batch = 0;
+            while (batch < MAX_BATCH) {
+                Slot slot = slots[(int) (head & mask)];
+                if (slot.sequence != head + 1) {
+                    break; // nothing (more) published
+                }
+                record.setLevel(slot.level);
+                record.setMessage(slot.message);
+                record.setParameters(slot.parameters);
+                record.setThrown(slot.thrown);
+                record.setSourceClassName(slot.source);
+                record.setInstant(Instant.ofEpochMilli(slot.millis));
+                record.setLongThreadID(slot.threadId);
+                // free the slot before writing so callers aren't held up by the disk
+                slot.message = null;
+                slot.parameters = null;
+                slot.thrown = null;
+                slot.sequence = head + slots.length;
+                head++;
+                publish(record);
+                batch++;
+            }
+            if (batch > 0) {
+                written.addAndGet(batch);
+                flush();
+                flushed = head;
+            }
+            if (System.nanoTime() >= nextReport) {
+                nextReport = System.nanoTime() + TimeUnit.SECONDS.toNanos(REPORT_SECONDS);
+                long newlyDropped = dropped.get() - reportedDropped;
+                long newlySampledOut = sampledOut.get() - reportedSampledOut;
+                if (newlyDropped > 0 || newlySampledOut > 0) {
+                    reportedDropped += newlyDropped;
+                    reportedSampledOut += newlySampledOut;
+                    record.setLevel(Level.WARNING);
+                    record.setMessage(String.format(
+                            "Log writer fell behind: %d records dropped, %d sampled out in the last %ds (policy %s)",
+                            newlyDropped, newlySampledOut, REPORT_SECONDS, policy));
+                    record.setParameters(null);
+                    record.setThrown(null);
+                    record.setSourceClassName(LogRingBuffer.class.getName());
+                    record.setInstant(Instant.now());
+                    record.setLongThreadID(Thread.currentThread().threadId());
+                    publish(record);
+                    flush();
+                }
+            }
+            if (batch == 0) {
+                // announce the park, then check again so an offer in between
+                // either is seen here or sees the flag and unparks
+                isWriterParked = true;
+                if (slots[(int) (head & mask)].sequence != head + 1) {
+                    LockSupport.parkNanos(this, Math.max(1, nextReport - System.nanoTime()));
+                }
+                isWriterParked = false;
+            }
+        }
+    }
+
+    /**
+     * Hands a record to the publisher; anything it throws (even an Error) is
+     * printed and counted, the writer has to outlive a bad record or handler
+     */
+    private void publish(LogRecord record) {
+        try {
+            publisher.accept(record);
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            t.printStackTrace();
+        }
+    }
+
+    private void flush() {
+        try {
+            flusher.run();
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d queued, %d written, %d failed, %d dropped, %d sampled out (policy %s)", size(),
+                slots.length, written.get(), failed.get(), dropped.get(), sampledOut.get(), policy);
+    }
+
+    /**
+     * This is just for testing/demo; compares how long 4 threads are held up
+     * logging to a file directly vs through the ring with each policy
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        FileHandler file = new FileHandler("ringbuffer-demo-%g.log", 8 * 1024 * 1024, 1, false);
+        file.setFormatter(new SimpleFormatter());
+        System.out.println(String.format("direct: %dns per record", timeThreads(records, message -> {
+            LogRecord record = new LogRecord(Level.INFO, message);
+            file.publish(record);
+        })));
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            LogRingBuffer ring = new LogRingBuffer(8192, policy, 10, file::publish, file::flush);
+            long nanos = timeThreads(records, message -> ring.offer(Level.INFO, message, null, "demo"));
+            ring.awaitDrained(30, TimeUnit.SECONDS);
+            System.out.println(String.format("%s: %dns per record, %s", policy, nanos, ring));
+        }
+        file.close();
+    }
+
+    private static long timeThreads(int records, Consumer<String> log) throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    log.accept("Thread " + id + " record " + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - start) / ((long) records * threads.length);
+    }
+}
@@ -1,11 +1,24 @@
 package Project.Common;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IllegalFormatException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -14,13 +27,258 @@ import java.util.logging.Logger;
  * Utility class for logging messages to a log file.
  * This class provides methods to log messages at various levels and ensures
  * thread-safe logging to an appropriate log file.
+ * <p>
+ * In async mode (see {@link LoggerConfig#setAsync(boolean)}) callers only
+ * queue the record in a {@link LogRingBuffer}; formatting and writing happen
+ * on a background thread.
+ * </p>
+ * <p>
+ * The source shown for a record is the class that logged it, found with a
+ * lazy StackWalker walk on the logging thread. Hot paths should log through a
+ * {@link ClassLogger} instead, which names its class once up front and skips
+ * the walk.
+ * </p>
  */
 public enum LoggerUtil {
     INSTANCE;
 
     private Logger logger;
     private LoggerConfig config;
-    private boolean isConfigured = false;
+    // volatile since write() checks it without the lock; set last, after the
+    // handlers and ring buffer it publishes
+    private volatile boolean isConfigured = false;
+    private LogRingBuffer ringBuffer = null; // only in async mode
+    private BinaryLogHandler binaryHandler = null; // only when writing a binary log
+    private int minLevel = Level.ALL.intValue(); // lowest level any handler writes
+
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final String LOGGER_PACKAGE = LoggerUtil.class.getPackage().getName();
+    // frame kinds, decided once per class
+    private static final int CALLER = 0;
+    private static final int SHARED = 1; // the rest of the logging package, only used if nothing else logged
+    private static final int LOGGING = 2;
+    private static final ClassValue<Integer> FRAME_KIND = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            String className = type.getName();
+            if (className.startsWith("java.util.logging") || type == Thread.class
+                    || className.startsWith(LoggerUtil.class.getName()) || type == LogRingBuffer.class) {
+                return LOGGING;
+            }
+            return className.startsWith(LOGGER_PACKAGE) ? SHARED : CALLER;
+        }
+    };
+
+    /**
+     * Logs on behalf of one class, so records don't need a stack walk to find
+     * their source. Keep one in a static field of the class that logs, i.e.
+     * <code>private static final LoggerUtil.ClassLogger LOG = LoggerUtil.forClass(Room.class);</code>
+     */
+    public static final class ClassLogger {
+        private final String source;
+
+        private ClassLogger(String source) {
+            this.source = source;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public void log(Level level, String message) {
+            INSTANCE.write(level, message, null, source);
+        }
+
+        public void log(Level level, String message, Throwable throwable) {
+            INSTANCE.write(level, message, throwable, source);
+        }
+
+        public boolean isLoggable(Level level) {
+            return INSTANCE.isLoggable(level);
+        }
+
+        public void log(Level level, Supplier<String> message) {
+            if (INSTANCE.isLoggable(level)) {
+                INSTANCE.write(level, message.get(), null, source);
+            }
+        }
+
+        public void log(Level level, String format, Object arg) {
+            if (INSTANCE.isLoggable(level)) {
+                INSTANCE.write(level, format, new Object[] { arg }, null, source);
+            }
+        }
+
+        public void log(Level level, String format, Object arg1, Object arg2) {
+            if (INSTANCE.isLoggable(level)) {
+                INSTANCE.write(level, format, new Object[] { arg1, arg2 }, null, source);
+            }
+        }
+
+        public void log(Level level, String format, Object arg1, Object arg2, Object arg3) {
+            if (INSTANCE.isLoggable(level)) {
+                INSTANCE.write(level, format, new Object[] { arg1, arg2, arg3 }, null, source);
+            }
+        }
+
+        public void info(String message) {
+            log(Level.INFO, message);
+        }
+
+        public void info(Supplier<String> message) {
+            log(Level.INFO, message);
+        }
+
+        public void info(String format, Object arg) {
+            log(Level.INFO, format, arg);
+        }
+
+        public void info(String format, Object arg1, Object arg2) {
+            log(Level.INFO, format, arg1, arg2);
+        }
+
+        /**
+         * Logs a formatted message unless the level is disabled or the call
+         * site is over its limit
+         *
+         * @param level
+         * @param site   the call site's limiter
+         * @param format
+         * @param arg
+         */
+        public void log(Level level, LogLimiter site, String format, Object arg) {
+            if (INSTANCE.isLoggable(level) && site.tryAcquire()) {
+                writeLimited(level, site, format, new Object[] { arg });
+            }
+        }
+
+        public void log(Level level, LogLimiter site, String format, Object arg1, Object arg2) {
+            if (INSTANCE.isLoggable(level) && site.tryAcquire()) {
+                writeLimited(level, site, format, new Object[] { arg1, arg2 });
+            }
+        }
+
+        public void log(Level level, LogLimiter site, String format, Object arg1, Object arg2, Object arg3) {
+            if (INSTANCE.isLoggable(level) && site.tryAcquire()) {
+                writeLimited(level, site, format, new Object[] { arg1, arg2, arg3 });
+            }
+        }
+
+        private void writeLimited(Level level, LogLimiter site, String format, Object[] args) {
+            long suppressed = site.takeSuppressed();
+            if (suppressed > 0) {
+                format += LogLimiter.SUPPRESSED;
+                args = Arrays.copyOf(args, args.length + 1);
+                args[args.length - 1] = suppressed;
+            }
+            INSTANCE.write(level, format, args, null, source);
+        }
+
+        public void info(LogLimiter site, String format, Object arg) {
+            log(Level.INFO, site, format, arg);
+        }
+
+        public void info(LogLimiter site, String format, Object arg1, Object arg2) {
+            log(Level.INFO, site, format, arg1, arg2);
+        }
+
+        /**
+         * @return true if records keep their template and args (binary log),
+         *         so callers should hand those over instead of a finished
+         *         (i.e., colored) message
+         */
+        public boolean isStructured() {
+            return INSTANCE.isStructured();
+        }
+
+        public void warning(String message) {
+            log(Level.WARNING, message);
+        }
+
+        public void warning(String message, Throwable throwable) {
+            log(Level.WARNING, message, throwable);
+        }
+
+        public void severe(String message) {
+            log(Level.SEVERE, message);
+        }
+
+        public void severe(String message, Throwable throwable) {
+            log(Level.SEVERE, message, throwable);
+        }
+
+        public void fine(String message) {
+            log(Level.FINE, message);
+        }
+
+        public void fine(Supplier<String> message) {
+            log(Level.FINE, message);
+        }
+
+        public void fine(String format, Object arg) {
+            log(Level.FINE, format, arg);
+        }
+
+        public void fine(String format, Object arg1, Object arg2) {
+            log(Level.FINE, format, arg1, arg2);
+        }
+    }
+
+    /**
+     * @param type the class doing the logging
+     * @return a logger that names that class as the source of its records
+     */
+    public static ClassLogger forClass(Class<?> type) {
+        return new ClassLogger(type.getName());
+    }
+
+    /**
+     * @param type the class doing the logging (its category for
+     *             {@link LoggerConfig#setLimit})
+     * @param site names the call within that class
+     * @return a limiter to keep in a static field next to that call
+     */
+    public static LogLimiter limiter(Class<?> type, String site) {
+        return new LogLimiter(type.getName(), site);
+    }
+
+    /**
+     * @return the configured call site limits by category
+     */
+    Map<String, LogLimiter.Limit> getLimits() {
+        if (!isConfigured) {
+            setupLogger();
+        }
+        return config.getLimits();
+    }
+
+    /**
+     * Determines the name of the class that called the logging method. Only
+     * walks as many frames as it takes to get past the logging package.
+     * 
+     * @return the name of the calling class
+     */
+    private static String getCallingClassName() {
+        return WALKER.walk(frames -> {
+            String shared = null;
+            Class<?> outermost = null; // i.e., LoggerUtil.main() logging for itself
+            Iterator<StackWalker.StackFrame> iterator = frames.iterator();
+            while (iterator.hasNext()) {
+                Class<?> type = iterator.next().getDeclaringClass();
+                int kind = FRAME_KIND.get(type);
+                if (kind == CALLER) {
+                    return type.getName();
+                }
+                if (kind == SHARED && shared == null) {
+                    shared = type.getName();
+                }
+                if (!type.getName().startsWith("java.")) {
+                    outermost = type;
+                }
+            }
+            return shared != null ? shared : outermost != null ? outermost.getName() : null;
+        });
+    }
 
     LoggerUtil() {
     }
@@ -55,11 +313,14 @@ public enum LoggerUtil {
         public String format(LogRecord record) {
             SimpleDateFormat dateFormat = new SimpleDateFormat(PATTERN);
             String date = dateFormat.format(new Date(record.getMillis()));
-            String callingClass = getCallingClassName();
-            String source = callingClass != null ? callingClass
-                    : record.getSourceClassName() != null ? record.getSourceClassName() : "unknown";
-
-            String message = formatMessage(record);
+            // resolved on the thread that logged it (see LoggerUtil.write())
+            String source = record.getSourceClassName() != null ? record.getSourceClassName() : "unknown";
+
+            // records keep their template and args in async mode (formatted
+            // here, on the log-writer thread) and when a binary log is written
+            String message = record.getParameters() != null
+                    ? formatParameters(record.getMessage(), record.getParameters())
+                    : formatMessage(record);
             if (message == null)
                 message = "null";
             String level = getColoredLevel(record.getLevel());
@@ -73,23 +334,19 @@ public enum LoggerUtil {
         }
 
         /**
-         * Determines the name of the class that called the logging method.
+         * Fills in a record's format; a bad format can't be thrown back to the
+         * caller from the log-writer thread, so it's written with the raw args
          * 
-         * @return the name of the calling class
-         */
-        private static String getCallingClassName() {
-            String loggerUtilPackage = LoggerUtil.class.getPackage().getName();
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            for (StackTraceElement element : stackTrace) {
-                String className = element.getClassName();
-                // Skip all classes in the logging framework and the package of LoggerUtil
-                if (!className.startsWith("java.util.logging") &&
-                        !className.startsWith(loggerUtilPackage) &&
-                        !className.equals(Thread.class.getName())) {
-                    return className;
-                }
+         * @param format the record's message
+         * @param args   the record's parameters
+         * @return the formatted message
+         */
+        private static String formatParameters(String format, Object[] args) {
+            try {
+                return String.format(format, args);
+            } catch (IllegalFormatException e) {
+                return format + " " + Arrays.toString(args);
             }
-            return null;
         }
 
         /**
@@ -167,6 +424,38 @@ public enum LoggerUtil {
 
     }
 
+    /**
+     * FileHandler that leaves flushing to the log writer, once per batch
+     */
+    private static class BatchingFileHandler extends FileHandler {
+        private BatchingFileHandler(String pattern, int limit, int count) throws IOException {
+            super(pattern, limit, count, true);
+        }
+
+        @Override
+        public void flush() {
+            // publish() flushes every record, the writer calls flushBatch()
+        }
+
+        private void flushBatch() {
+            super.flush();
+        }
+    }
+
+    /**
+     * ConsoleHandler that leaves flushing to the log writer, once per batch
+     */
+    private static class BatchingConsoleHandler extends ConsoleHandler {
+        @Override
+        public void flush() {
+            // publish() flushes every record, the writer calls flushBatch()
+        }
+
+        private void flushBatch() {
+            super.flush();
+        }
+    }
+
     /**
      * Ensures the logger is configured only once.
      */
@@ -190,28 +479,206 @@ public enum LoggerUtil {
             String logPattern = config.getLogLocation().replace(".log", "-%g.log");
             // FileHandler writes log messages to a specified file, with support for
             // rotating log files
-            FileHandler fileHandler = new FileHandler(
-                    logPattern,
-                    config.getFileSizeLimit(),
-                    config.getFileCount(),
-                    true);
-            fileHandler.setFormatter(new CustomFormatter());
+            Handler fileHandler;
+            if (config.isBinary()) {
+                // segments of template ids + typed args instead of formatted text
+                binaryHandler = new BinaryLogHandler(config.getLogLocation().replace(".log", "-%g.rlog"),
+                        config.getFileSizeLimit(), config.getFileCount(), config.getStackTraceLimit());
+                fileHandler = binaryHandler;
+            } else {
+                fileHandler = config.isAsync()
+                        ? new BatchingFileHandler(logPattern, config.getFileSizeLimit(), config.getFileCount())
+                        : new FileHandler(
+                                logPattern,
+                                config.getFileSizeLimit(),
+                                config.getFileCount(),
+                                true);
+                fileHandler.setFormatter(new CustomFormatter());
+            }
             fileHandler.setLevel(config.getFileLogLevel());
             logger.addHandler(fileHandler);
 
             // ConsoleHandler prints log messages to the console
-            ConsoleHandler consoleHandler = new ConsoleHandler();
+            ConsoleHandler consoleHandler = config.isAsync() ? new BatchingConsoleHandler() : new ConsoleHandler();
             consoleHandler.setFormatter(new CustomFormatter());
             consoleHandler.setLevel(config.getConsoleLogLevel());
             logger.addHandler(consoleHandler);
 
             logger.setLevel(Level.ALL);
+            minLevel = Math.min(config.getFileLogLevel().intValue(), config.getConsoleLogLevel().intValue());
+            if (config.isAsync()) {
+                Handler[] handlers = { fileHandler, consoleHandler };
+                ringBuffer = new LogRingBuffer(config.getAsyncBufferSize(), config.getOverflowPolicy(),
+                        config.getSampleRate(), record -> {
+                            for (Handler handler : handlers) {
+                                handler.publish(record);
+                            }
+                        }, () -> {
+                            if (fileHandler instanceof BatchingFileHandler) {
+                                ((BatchingFileHandler) fileHandler).flushBatch();
+                            } else {
+                                fileHandler.flush();
+                            }
+                            ((BatchingConsoleHandler) consoleHandler).flushBatch();
+                        });
+            }
             isConfigured = true;
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Hands the record to the ring buffer in async mode, otherwise logs it on
+     * the calling thread
+     *
+     * @param source the logging class or null to look it up (if enabled)
+     */
+    private void write(Level level, String message, Throwable throwable, String source) {
+        write(level, message, null, throwable, source);
+    }
+
+    /**
+     * @param message the message, or its format if there are args
+     * @param args    formatted here when logging synchronously to text,
+     *                otherwise kept (snapshot in async mode) for the writer
+     * @param source  the logging class or null to look it up (if enabled)
+     */
+    private void write(Level level, String message, Object[] args, Throwable throwable, String source) {
+        if (!isConfigured) {
+            setupLogger();
+        }
+        if (level.intValue() < minLevel) {
+            return; // no handler would write it
+        }
+        if (source == null && config.isResolvingCaller()) {
+            source = getCallingClassName();
+        }
+        if (args != null) {
+            if (ringBuffer != null) {
+                // formatted (or written as-is) later, on the log-writer thread
+                BinaryLogHandler.snapshot(args);
+            } else if (binaryHandler == null) {
+                message = String.format(message, args);
+                args = null;
+            }
+        }
+        if (ringBuffer != null) {
+            ringBuffer.offer(level, message, args, throwable, source);
+            return;
+        }
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(logger.getName());
+        record.setParameters(args);
+        // setting it (even to null) keeps LogRecord from inferring it with its own stack walk
+        record.setSourceClassName(source);
+        record.setThrown(throwable);
+        logger.log(record);
+    }
+
+    /**
+     * Waits for records queued in async mode to be written and flushed (i.e.,
+     * before the JVM exits), otherwise flushes the binary log if there is one
+     *
+     * @param timeout
+     * @param unit
+     * @return true if everything was written in time
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        boolean isDrained = true;
+        if (ringBuffer != null) {
+            try {
+                isDrained = ringBuffer.awaitDrained(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                isDrained = false;
+            }
+        }
+        if (binaryHandler != null && ringBuffer == null) {
+            binaryHandler.flush(); // in async mode the writer flushes it (and may still be writing to it)
+        }
+        return isDrained;
+    }
+
+    /**
+     * @return true if records keep their template and args for a binary log
+     *         instead of being formatted when they're logged
+     */
+    public boolean isStructured() {
+        if (!isConfigured) {
+            setupLogger();
+        }
+        return binaryHandler != null;
+    }
+
+    /**
+     * @return the async ring buffer's counters or null if logging is synchronous
+     */
+    public String getAsyncStats() {
+        return ringBuffer == null ? null : ringBuffer.toString();
+    }
+
+    /**
+     * Checks the level before building an expensive message; the lazy
+     * overloads below already do this
+     *
+     * @param level
+     * @return true if a handler would write a record at this level
+     */
+    public boolean isLoggable(Level level) {
+        if (!isConfigured) {
+            setupLogger();
+        }
+        return level.intValue() >= minLevel;
+    }
+
+    /**
+     * Logs a message that's only built if the level is enabled (i.e., one that
+     * colors or formats a payload).
+     * 
+     * @param level   the level of the log message
+     * @param message builds the log message
+     */
+    public void log(Level level, Supplier<String> message) {
+        if (isLoggable(level)) {
+            write(level, message.get(), null, null);
+        }
+    }
+
+    /**
+     * Logs a {@link String#format(String, Object...)} message that's only
+     * formatted if the level is enabled. Fixed arity so a disabled call
+     * doesn't allocate an args array; note primitives are still boxed by the
+     * caller.
+     * 
+     * @param level  the level of the log message
+     * @param format the message format
+     * @param arg
+     */
+    public void log(Level level, String format, Object arg) {
+        if (isLoggable(level)) {
+            write(level, format, new Object[] { arg }, null, null);
+        }
+    }
+
+    /**
+     * @see #log(Level, String, Object)
+     */
+    public void log(Level level, String format, Object arg1, Object arg2) {
+        if (isLoggable(level)) {
+            write(level, format, new Object[] { arg1, arg2 }, null, null);
+        }
+    }
+
+    /**
+     * @see #log(Level, String, Object)
+     */
+    public void log(Level level, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(level)) {
+            write(level, format, new Object[] { arg1, arg2, arg3 }, null, null);
+        }
+    }
+
     /**
      * Logs a message at the specified level.
      * 
@@ -221,7 +688,7 @@ public enum LoggerUtil {
     public void log(Level level, String message) {
         if (!isConfigured)
             setupLogger();
-        logger.log(level, message);
+        write(level, message, null, null);
     }
 
     /**
@@ -239,22 +706,22 @@ public enum LoggerUtil {
         }
 
         if (message instanceof String) {
-            logger.log(level, (String) message);
+            write(level, (String) message, null, null);
 
         } else if (message instanceof Throwable) {
             Throwable t = (Throwable) message;
             String msg = (t.getMessage() != null) ? t.getMessage() : t.getClass().getName();
-            logger.log(level, msg, t);
+            write(level, msg, t, null);
 
         } else if (message != null) {
             try {
-                logger.log(level, message.toString());
+                write(level, message.toString(), null, null);
             } catch (Exception ex) {
-                logger.log(level, "Error during toString(): " + ex.getMessage(), ex);
+                write(level, "Error during toString(): " + ex.getMessage(), ex, null);
             }
 
         } else {
-            logger.log(level, "null");
+            write(level, "null", null, null);
         }
     }
 
@@ -268,7 +735,7 @@ public enum LoggerUtil {
     public void log(Level level, String message, Throwable throwable) {
         if (!isConfigured)
             setupLogger();
-        logger.log(level, message, throwable);
+        write(level, message, throwable, null);
     }
 
     /**
@@ -289,6 +756,32 @@ public enum LoggerUtil {
         log(Level.INFO, message);
     }
 
+    /**
+     * Logs an informational message that's only built if INFO is enabled.
+     * 
+     * @param message builds the log message
+     */
+    public void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    /**
+     * Logs an informational message that's only formatted if INFO is enabled.
+     * 
+     * @param format the message format
+     * @param arg
+     */
+    public void info(String format, Object arg) {
+        log(Level.INFO, format, arg);
+    }
+
+    /**
+     * @see #info(String, Object)
+     */
+    public void info(String format, Object arg1, Object arg2) {
+        log(Level.INFO, format, arg1, arg2);
+    }
+
     /**
      * Logs an exception with an INFO level.
      *
@@ -373,6 +866,34 @@ public enum LoggerUtil {
         log(Level.FINE, message);
     }
 
+    /**
+     * Logs a fine-grained informational message that's only built if FINE is
+     * enabled.
+     * 
+     * @param message builds the log message
+     */
+    public void fine(Supplier<String> message) {
+        log(Level.FINE, message);
+    }
+
+    /**
+     * Logs a fine-grained informational message that's only formatted if FINE
+     * is enabled.
+     * 
+     * @param format the message format
+     * @param arg
+     */
+    public void fine(String format, Object arg) {
+        log(Level.FINE, format, arg);
+    }
+
+    /**
+     * @see #fine(String, Object)
+     */
+    public void fine(String format, Object arg1, Object arg2) {
+        log(Level.FINE, format, arg1, arg2);
+    }
+
     /**
      * Logs a finer-grained informational message.
      * 
@@ -421,6 +942,13 @@ public enum LoggerUtil {
         private Level fileLogLevel = Level.ALL; // default log level for file
         private Level consoleLogLevel = Level.ALL; // default log level for console
         private int stackTraceLimit = 10; // default maximum number of stack trace elements
+        private boolean isAsync = false; // write from a background thread
+        private int asyncBufferSize = 8192; // records the async ring buffer holds
+        private LogRingBuffer.OverflowPolicy overflowPolicy = LogRingBuffer.OverflowPolicy.DROP;
+        private int sampleRate = 10; // 1 in N kept under pressure with SAMPLE
+        private boolean isResolvingCaller = true; // walk the stack for records without a ClassLogger
+        private final Map<String, LogLimiter.Limit> limits = new HashMap<>(); // by category, see LogLimiter
+        private boolean isBinary = false; // BinaryLogHandler segments instead of the text log file
 
         // Getters and Setters for each property
 
@@ -531,6 +1059,162 @@ public enum LoggerUtil {
         public void setStackTraceLimit(int stackTraceLimit) {
             this.stackTraceLimit = stackTraceLimit;
         }
+
+        /**
+         * Checks if records are written from a background thread.
+         * 
+         * @return true if logging is async
+         */
+        public boolean isAsync() {
+            return isAsync;
+        }
+
+        /**
+         * Sets whether records are queued in a ring buffer and written from a
+         * background thread instead of the calling thread.
+         * 
+         * @param isAsync true to log asynchronously
+         */
+        public void setAsync(boolean isAsync) {
+            this.isAsync = isAsync;
+        }
+
+        /**
+         * Gets the number of records the async ring buffer holds.
+         * 
+         * @return the ring buffer capacity
+         */
+        public int getAsyncBufferSize() {
+            return asyncBufferSize;
+        }
+
+        /**
+         * Sets the number of records the async ring buffer holds (rounded up to
+         * a power of two).
+         * 
+         * @param asyncBufferSize the ring buffer capacity
+         */
+        public void setAsyncBufferSize(int asyncBufferSize) {
+            this.asyncBufferSize = asyncBufferSize;
+        }
+
+        /**
+         * Gets what callers do when the async ring buffer is full.
+         * 
+         * @return the overflow policy
+         */
+        public LogRingBuffer.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        /**
+         * Sets what callers do when the async ring buffer is full.
+         * 
+         * @param overflowPolicy drop, block or sample
+         */
+        public void setOverflowPolicy(LogRingBuffer.OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        /**
+         * Gets how many records below WARNING share one slot under pressure.
+         * 
+         * @return N, as in 1 in N records kept
+         */
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        /**
+         * Sets how many records below WARNING share one slot under pressure
+         * (only with the SAMPLE overflow policy).
+         * 
+         * @param sampleRate N, as in 1 in N records kept
+         */
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        /**
+         * Checks if records logged without a ClassLogger look up their calling
+         * class.
+         * 
+         * @return true if the caller is resolved
+         */
+        public boolean isResolvingCaller() {
+            return isResolvingCaller;
+        }
+
+        /**
+         * Sets whether records logged without a ClassLogger look up their
+         * calling class (a stack walk per record) or are shown as "unknown".
+         * 
+         * @param isResolvingCaller false to skip the lookup
+         */
+        public void setResolvingCaller(boolean isResolvingCaller) {
+            this.isResolvingCaller = isResolvingCaller;
+        }
+
+        /**
+         * Checks if the log file is written in the binary format (read it with
+         * BinaryLogDecoder).
+         * 
+         * @return true if it's binary
+         */
+        public boolean isBinary() {
+            return isBinary;
+        }
+
+        /**
+         * Sets whether the log file is written as binary segments (template
+         * ids and typed args, "name-N.rlog") instead of formatted text. The
+         * console is still text.
+         * 
+         * @param isBinary true to write binary segments
+         */
+        public void setBinary(boolean isBinary) {
+            this.isBinary = isBinary;
+        }
+
+        /**
+         * Gets the call site limits by category.
+         * 
+         * @return the limits, keyed by class#site, class or package name
+         */
+        public Map<String, LogLimiter.Limit> getLimits() {
+            return limits;
+        }
+
+        /**
+         * Limits how often matching call sites write (see {@link LogLimiter}).
+         * 
+         * @param category a class#site, class or package name
+         * @param spec     "1/N", "K/s", both ("1/10,500/s") or "off"
+         * @throws IllegalArgumentException if the spec isn't valid
+         */
+        public void setLimit(String category, String spec) {
+            limits.put(category, LogLimiter.Limit.parse(spec));
+        }
+
+        /**
+         * Sets several limits at once.
+         * 
+         * @param specs i.e.,
+         *              "Project.Server.BaseServerThread=100/s;Project.Server.Room#relay=1/10"
+         * @throws IllegalArgumentException if a spec isn't valid
+         */
+        public void setLimits(String specs) {
+            for (String entry : specs.split(";")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int equals = entry.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected category=limit: " + entry);
+                }
+                setLimit(entry.substring(0, equals).trim(), entry.substring(equals + 1));
+            }
+        }
     }
 
     /**
@@ -539,6 +1223,14 @@ public enum LoggerUtil {
      * @param args
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("alloc")) {
+            checkDisabledAllocations(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("sinks")) {
+            compareSinks(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+            return;
+        }
         // Create a LoggerConfig instance and set the desired configurations
         LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
         config.setFileSizeLimit(2048 * 1024); // 2MB file size limit
@@ -577,6 +1269,9 @@ public enum LoggerUtil {
 
         LoggerUtil.INSTANCE.warning(new Exception("Logging a Throwable object using warning"));
 
+        // Logging through a ClassLogger names the source without a stack walk
+        LoggerUtil.forClass(LoggerConfig.class).info("Logging with a fixed source class");
+
         LoggerUtil.INSTANCE.severe(new Object() {
             @Override
             public String toString() {
@@ -605,6 +1300,110 @@ public enum LoggerUtil {
         }
     }
 
+    /**
+     * This is just for testing/demo; measures how many bytes the calling
+     * thread allocates logging at a disabled level, eagerly vs through the
+     * lazy overloads (run with "alloc")
+     *
+     * @param calls
+     */
+    private static void checkDisabledAllocations(int calls) {
+        LoggerConfig config = new LoggerConfig();
+        config.setLogLocation("alloc-check.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        INSTANCE.setConfig(config);
+        ClassLogger log = forClass(LoggerConfig.class);
+        Object payload = new Object() {
+            @Override
+            public String toString() {
+                return "Payload[MESSAGE] Client Id [1] Message: [hello]";
+            }
+        };
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("Per-thread allocation counters aren't available on this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().threadId();
+        Map<String, Runnable> cases = new LinkedHashMap<>();
+        cases.put("eager concat", () -> log.info("Sending to client: " + payload));
+        cases.put("format + arg", () -> log.info("Sending to client: %s", payload));
+        cases.put("supplier", () -> log.info(() -> "Sending to client: " + payload));
+        cases.put("isLoggable guard", () -> {
+            if (log.isLoggable(Level.INFO)) {
+                log.info(TextFX.colorize("Sending to client: " + payload, TextFX.Color.CYAN));
+            }
+        });
+        for (var entry : cases.entrySet()) {
+            Runnable call = entry.getValue();
+            for (int i = 0; i < 200_000; i++) { // warm up so the JIT has compiled (and inlined) the call
+                call.run();
+            }
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < calls; i++) {
+                call.run();
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            System.out.println(String.format("%-16s %,d bytes over %,d disabled calls (%.2f per call)",
+                    entry.getKey(), allocated, calls, (double) allocated / calls));
+        }
+    }
+
+    /**
+     * This is just for testing/demo; writes the same per-payload trace through
+     * the text log (formatted and colored like ServerThread does) and the
+     * binary log, and compares time and bytes per record (run with "sinks")
+     *
+     * @param records
+     */
+    private static void compareSinks(int records) {
+        Payload payload = new Payload();
+        payload.setPayloadType(PayloadType.MESSAGE);
+        Random random = new Random(42);
+        try {
+            FileHandler text = new FileHandler("sinks-demo-%g.log", Integer.MAX_VALUE, 1, false);
+            text.setFormatter(new CustomFormatter());
+            BinaryLogHandler binary = new BinaryLogHandler("sinks-demo-%g.rlog", Integer.MAX_VALUE, 1, 10);
+            long textNanos = 0;
+            long binaryNanos = 0;
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                long start = System.nanoTime();
+                random.setSeed(42);
+                for (int i = 0; i < records; i++) {
+                    payload.setClientId(random.nextInt(100));
+                    payload.setMessage(String.format("player %d picked %d", random.nextInt(100), random.nextInt(5)));
+                    LogRecord record = new LogRecord(Level.INFO, TextFX.colorize(
+                            String.format("Thread[%s]: %s", 7L, "Sending to client: " + payload), TextFX.Color.CYAN));
+                    record.setSourceClassName("Project.Server.ServerThread");
+                    text.publish(record);
+                }
+                textNanos = System.nanoTime() - start;
+                random.setSeed(42);
+                start = System.nanoTime();
+                for (int i = 0; i < records; i++) {
+                    payload.setClientId(random.nextInt(100));
+                    payload.setMessage(String.format("player %d picked %d", random.nextInt(100), random.nextInt(5)));
+                    LogRecord record = new LogRecord(Level.INFO, "Thread[%s]: Sending to client: %s");
+                    record.setParameters(new Object[] { 7L, payload });
+                    record.setSourceClassName("Project.Server.ServerThread");
+                    binary.publish(record);
+                }
+                binaryNanos = System.nanoTime() - start;
+            }
+            text.close();
+            binary.close();
+            double textBytes = new File("sinks-demo-0.log").length() / (2.0 * records);
+            double binaryBytes = new File("sinks-demo-0.rlog").length() / (2.0 * records);
+            System.out.println(String.format("text:   %dns, %.1f bytes per record", textNanos / records, textBytes));
+            System.out.println(
+                    String.format("binary: %dns, %.1f bytes per record", binaryNanos / records, binaryBytes));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private static void recursiveMethod(int depth) {
         // Keep calling itself to cause a StackOverflowError
         recursiveMethod(depth + 1);
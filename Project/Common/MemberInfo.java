@@ -0,0 +1,56 @@
+package Project.Common;
+
+import java.io.Serializable;
+
+/**
+ * State of one room member as of a RoomSnapshotPayload.
+ * Immutable; later changes arrive as the usual per-member payloads.
+ */
+public class MemberInfo implements Serializable {
+    private final long clientId;
+    private final String clientName;
+    private final boolean isReady;
+    private final boolean isAway;
+    private final boolean tookTurn;
+    private final int points;
+
+    public MemberInfo(long clientId, String clientName, boolean isReady, boolean isAway, boolean tookTurn,
+            int points) {
+        this.clientId = clientId;
+        this.clientName = clientName;
+        this.isReady = isReady;
+        this.isAway = isAway;
+        this.tookTurn = tookTurn;
+        this.points = points;
+    }
+
+    public long getClientId() {
+        return clientId;
+    }
+
+    public String getClientName() {
+        return clientName;
+    }
+
+    public boolean isReady() {
+        return isReady;
+    }
+
+    public boolean isAway() {
+        return isAway;
+    }
+
+    public boolean didTakeTurn() {
+        return tookTurn;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s#%d (%s%s%s, %d points)", clientName, clientId, isReady ? "ready" : "not ready",
+                isAway ? ", away" : "", tookTurn ? ", took turn" : "", points);
+    }
+}
@@ -25,4 +25,11 @@ public enum PayloadType {
        SETTINGS, // syncs game settings
        AWAY, // NEW: syncs away status
        SYNC_AWAY, // NEW: quiet sync of away status
+       ROOM_DIRECTORY, // paginated room list with occupancy/phase/host
+       ROOM_DIRECTORY_SUBSCRIBE, // client asking for directory changes matching a query (null to stop)
+       ROOM_DIRECTORY_DELTA, // pushed directory changes
+       ROOM_SNAPSHOT, // full member list and game state sent once on join
+       ROOM_MEMBERSHIP, // batched joins/leaves since the last window
+       SCOREBOARD, // points of every player (or just the changed ones) in one payload
+       ROUND_STATE, // round transition: battles, eliminations, scores and the new deadline
 }
@@ -0,0 +1,39 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes to the room directory since the last push, for clients subscribed
+ * with ROOM_DIRECTORY_SUBSCRIBE. Only rooms matching the subscribed query are
+ * included.
+ */
+public class RoomDirectoryDeltaPayload extends Payload {
+    private List<RoomInfo> updated = new ArrayList<RoomInfo>(); // created or changed rooms
+    private List<String> removed = new ArrayList<String>(); // names of closed rooms
+
+    public RoomDirectoryDeltaPayload() {
+        setPayloadType(PayloadType.ROOM_DIRECTORY_DELTA);
+    }
+
+    public List<RoomInfo> getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(List<RoomInfo> updated) {
+        this.updated = updated;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<String> removed) {
+        this.removed = removed;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" Updated %s Removed %s", updated, removed);
+    }
+}
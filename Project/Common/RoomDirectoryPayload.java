@@ -0,0 +1,52 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the room directory.
+ * <p>
+ * Request: the message is the (partial) room name to look for, cursor is the
+ * nextCursor of the previous page (null for the first page) and limit is the
+ * page size. Response: the matching rooms in name order and the cursor of the
+ * next page (null if this was the last one).
+ * </p>
+ */
+public class RoomDirectoryPayload extends Payload {
+    private String cursor;
+    private int limit;
+    private List<RoomInfo> rooms = new ArrayList<RoomInfo>();
+
+    public RoomDirectoryPayload() {
+        setPayloadType(PayloadType.ROOM_DIRECTORY);
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public List<RoomInfo> getRooms() {
+        return rooms;
+    }
+
+    public void setRooms(List<RoomInfo> rooms) {
+        this.rooms = rooms;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" Cursor [%s] Limit [%d] Rooms %s", cursor, limit, rooms);
+    }
+}
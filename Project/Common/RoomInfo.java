@@ -0,0 +1,43 @@
+package Project.Common;
+
+import java.io.Serializable;
+
+/**
+ * Directory entry describing a room without joining it.
+ * Immutable; rooms publish a new one whenever something listed here changes.
+ */
+public class RoomInfo implements Serializable {
+    private final String name;
+    private final int clientCount;
+    private final Phase phase; // null for rooms without a game (i.e., the lobby)
+    private final String hostName; // null if nobody is hosting
+
+    public RoomInfo(String name, int clientCount, Phase phase, String hostName) {
+        this.name = name;
+        this.clientCount = clientCount;
+        this.phase = phase;
+        this.hostName = hostName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getHostName() {
+        return hostName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d players%s%s)", name, clientCount, phase == null ? "" : ", " + phase,
+                hostName == null ? "" : ", host " + hostName);
+    }
+}
@@ -0,0 +1,63 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everyone who joined, left or disconnected since the last batch, sent once
+ * per window instead of a ROOM_JOIN/ROOM_LEAVE and a chat message per change.
+ * <p>
+ * The message is the room name. Each member only appears in the list of
+ * their net change (i.e., someone who joined and left within the same window
+ * isn't listed at all), so the lists can be applied in any order. The client
+ * renders the chat summary itself.
+ * </p>
+ */
+public class RoomMembershipPayload extends Payload {
+    private long hostId = Constants.DEFAULT_CLIENT_ID;
+    private List<MemberInfo> joined = new ArrayList<MemberInfo>();
+    private List<MemberInfo> left = new ArrayList<MemberInfo>();
+    private List<MemberInfo> disconnected = new ArrayList<MemberInfo>();
+
+    public RoomMembershipPayload() {
+        setPayloadType(PayloadType.ROOM_MEMBERSHIP);
+    }
+
+    public long getHostId() {
+        return hostId;
+    }
+
+    public void setHostId(long hostId) {
+        this.hostId = hostId;
+    }
+
+    public List<MemberInfo> getJoined() {
+        return joined;
+    }
+
+    public void setJoined(List<MemberInfo> joined) {
+        this.joined = joined;
+    }
+
+    public List<MemberInfo> getLeft() {
+        return left;
+    }
+
+    public void setLeft(List<MemberInfo> left) {
+        this.left = left;
+    }
+
+    public List<MemberInfo> getDisconnected() {
+        return disconnected;
+    }
+
+    public void setDisconnected(List<MemberInfo> disconnected) {
+        this.disconnected = disconnected;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" Host [%d] Joined %s Left %s Disconnected %s", hostId, joined, left,
+                disconnected);
+    }
+}
@@ -0,0 +1,64 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything a client needs to render a room it just joined, sent once in
+ * place of a reset plus a SYNC_CLIENT/SYNC_READY/POINTS per member and a PHASE
+ * and SETTINGS each.
+ * <p>
+ * The message is the room name. The client replaces its whole member list
+ * with this one before notifying the UI.
+ * </p>
+ */
+public class RoomSnapshotPayload extends Payload {
+    private long hostId = Constants.DEFAULT_CLIENT_ID;
+    private Phase phase; // null for rooms without a game (i.e., the lobby)
+    private List<MemberInfo> members = new ArrayList<MemberInfo>();
+    private Map<String, String> settings = new LinkedHashMap<String, String>(); // same key/value as SETTINGS
+
+    public RoomSnapshotPayload() {
+        setPayloadType(PayloadType.ROOM_SNAPSHOT);
+    }
+
+    public long getHostId() {
+        return hostId;
+    }
+
+    public void setHostId(long hostId) {
+        this.hostId = hostId;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public List<MemberInfo> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<MemberInfo> members) {
+        this.members = members;
+    }
+
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+
+    public void setSettings(Map<String, String> settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" Host [%d] Phase [%s] Members %s Settings %s", hostId, phase,
+                members, settings);
+    }
+}
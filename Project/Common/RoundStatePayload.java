@@ -0,0 +1,96 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A whole round transition in one payload: how the last round played out
+ * (battles, eliminations and the resulting scoreboard) and the round that
+ * starts now.
+ * <p>
+ * The message is set when the session ended instead (i.e., "Game Over!
+ * Winner: ..."); there's no new round then and the deadline is 0. Otherwise
+ * every player's turn is reset and the round timer runs until the deadline.
+ * </p>
+ * <p>
+ * Rooms in mass match mode send how many players picked each choice instead
+ * of the battles, so the size stays the same no matter how many played.
+ * </p>
+ */
+public class RoundStatePayload extends ScoreboardPayload {
+    private int round;
+    private long deadline; // server epoch millis when the new round ends, 0 if none started
+    private long serverTime; // server epoch millis when this was sent (for clock offset)
+    private List<BattleResult> battles = new ArrayList<BattleResult>();
+    private long[] noPick = new long[0]; // eliminated for not picking
+    private long[] eliminated = new long[0]; // eliminated in a battle
+    private int[] choiceCounts = null; // players per Choice ordinal, only for mass matches
+
+    public RoundStatePayload() {
+        setPayloadType(PayloadType.ROUND_STATE);
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public void setRound(int round) {
+        this.round = round;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(long serverTime) {
+        this.serverTime = serverTime;
+    }
+
+    public List<BattleResult> getBattles() {
+        return battles;
+    }
+
+    public void setBattles(List<BattleResult> battles) {
+        this.battles = battles;
+    }
+
+    public long[] getNoPick() {
+        return noPick;
+    }
+
+    public void setNoPick(long[] noPick) {
+        this.noPick = noPick;
+    }
+
+    public long[] getEliminated() {
+        return eliminated;
+    }
+
+    public void setEliminated(long[] eliminated) {
+        this.eliminated = eliminated;
+    }
+
+    public int[] getChoiceCounts() {
+        return choiceCounts;
+    }
+
+    public void setChoiceCounts(int[] choiceCounts) {
+        this.choiceCounts = choiceCounts;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" round=%d deadline=%d battles=%s noPick=%s eliminated=%s%s", round,
+                deadline, battles, Arrays.toString(noPick), Arrays.toString(eliminated),
+                choiceCounts == null ? "" : " choiceCounts=" + Arrays.toString(choiceCounts));
+    }
+}
@@ -0,0 +1,51 @@
+package Project.Common;
+
+import java.util.Arrays;
+
+/**
+ * Points of many clients in one payload, clientIds[i] has points[i].
+ * <p>
+ * A full scoreboard lists every player in the room; a delta only lists the
+ * scores that changed since the previous scoreboard, everyone else keeps
+ * theirs.
+ * </p>
+ */
+public class ScoreboardPayload extends Payload {
+    private long[] clientIds = new long[0];
+    private int[] points = new int[0];
+    private boolean isDelta = false;
+
+    public ScoreboardPayload() {
+        setPayloadType(PayloadType.SCOREBOARD);
+    }
+
+    public long[] getClientIds() {
+        return clientIds;
+    }
+
+    public void setClientIds(long[] clientIds) {
+        this.clientIds = clientIds;
+    }
+
+    public int[] getPoints() {
+        return points;
+    }
+
+    public void setPoints(int[] points) {
+        this.points = points;
+    }
+
+    public boolean isDelta() {
+        return isDelta;
+    }
+
+    public void setDelta(boolean isDelta) {
+        this.isDelta = isDelta;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" %s clientIds=%s points=%s", isDelta ? "delta" : "full",
+                Arrays.toString(clientIds), Arrays.toString(points));
+    }
+}
@@ -2,20 +2,29 @@ package Project.Common;
 
 /* Originally based off of https://gist.github.com/MattToegel/c55747f26c5092d6362678d5b1729ec6 */
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
- * Simple countdown timer demo of java.util.Timer facility.
+ * Simple countdown timer ticking once per second.
  * Formerly called Countdown
+ * <p>
+ * Note: Backed by the shared TimerWheel instead of a java.util.Timer (a
+ * dedicated thread) per instance. Callbacks run through the Executor passed
+ * in (i.e., the owning Room) or on the wheel thread.
+ * </p>
  */
 
 public class TimedEvent {
-    private int secondsRemaining;
-    private Runnable expireCallback = null;
-    private Consumer<Integer> tickCallback = null;
-    final private Timer timer;
+    private volatile int secondsRemaining;
+    private volatile long deadline; // epoch millis when the countdown reaches 0
+    private volatile Runnable expireCallback = null;
+    private volatile Consumer<Integer> tickCallback = null;
+    private final Executor executor;
+    private volatile TimerWheel.Timeout timeout;
+    private volatile boolean isCancelled = false;
+    private long nextTick; // nanoTime of the next tick, keeps the rate fixed
 
     /**
      * Create a TimedEvent to trigger the passed in callback after a set duration
@@ -24,7 +33,19 @@ public class TimedEvent {
      * @param callback
      */
     public TimedEvent(int durationInSeconds, Runnable callback) {
-        this(durationInSeconds);
+        this(durationInSeconds, callback, null);
+    }
+
+    /**
+     * Create a TimedEvent to trigger the passed in callback after a set duration
+     * 
+     * @param durationInSeconds
+     * @param callback
+     * @param executor          where the callbacks run (null for the timer
+     *                          thread)
+     */
+    public TimedEvent(int durationInSeconds, Runnable callback, Executor executor) {
+        this(durationInSeconds, executor);
         this.expireCallback = callback;
     }
 
@@ -36,23 +57,52 @@ public class TimedEvent {
      * @param durationInSeconds
      */
     public TimedEvent(int durationInSeconds) {
-        timer = new Timer();
+        this(durationInSeconds, (Executor) null);
+    }
+
+    /**
+     * Create a TimedEvent to trigger after a set duration.
+     * Note: Requires expireCallback and/or tickCallback to be set otherwise it'll
+     * do nothing
+     * 
+     * @param durationInSeconds
+     * @param executor          where the callbacks run (null for the timer
+     *                          thread)
+     */
+    public TimedEvent(int durationInSeconds, Executor executor) {
+        this.executor = executor;
         secondsRemaining = durationInSeconds;
-        timer.scheduleAtFixedRate(new TimerTask() {
-            public void run() {
-                secondsRemaining--;
-                if (tickCallback != null) {
-                    tickCallback.accept(secondsRemaining);
-                }
-                if (secondsRemaining <= 0) {
-                    timer.cancel();
-                    secondsRemaining = 0;
-                    if (expireCallback != null) {
-                        expireCallback.run();
-                    }
-                }
+        deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(durationInSeconds);
+        nextTick = System.nanoTime();
+        scheduleNextTick();
+    }
+
+    private void scheduleNextTick() {
+        nextTick += TimeUnit.SECONDS.toNanos(1);
+        timeout = TimerWheel.INSTANCE.schedule(this::tick, nextTick - System.nanoTime(), TimeUnit.NANOSECONDS,
+                executor);
+    }
+
+    private void tick() {
+        if (isCancelled) {
+            return;
+        }
+        secondsRemaining--;
+        Consumer<Integer> tickCallback = this.tickCallback;
+        if (tickCallback != null) {
+            tickCallback.accept(secondsRemaining);
+        }
+        if (secondsRemaining <= 0) {
+            secondsRemaining = 0;
+            Runnable expireCallback = this.expireCallback;
+            if (!isCancelled && expireCallback != null) {
+                expireCallback.run();
             }
-        }, 1000, 1000);
+            return;
+        }
+        if (!isCancelled) {
+            scheduleNextTick();
+        }
     }
 
     /**
@@ -78,9 +128,13 @@ public class TimedEvent {
      * Removes all callback references and cancels the timer
      */
     public void cancel() {
+        isCancelled = true;
         expireCallback = null;
         tickCallback = null;
-        timer.cancel();
+        TimerWheel.Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 
     /**
@@ -88,6 +142,14 @@ public class TimedEvent {
      */
     public void setDurationInSeconds(int d) {
         secondsRemaining = d;
+        deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(d);
+    }
+
+    /**
+     * @return epoch millis when the countdown reaches 0
+     */
+    public long getDeadline() {
+        return deadline;
     }
 
     public int getRemainingTime() {
@@ -106,5 +168,11 @@ public class TimedEvent {
         cd.setTickCallback((tick) -> {
             System.out.println("Tick: " + tick);
         });
+        try {
+            // the timer thread is a daemon, keep the demo alive until it expires
+            Thread.sleep(31000);
+        } catch (InterruptedException e) {
+            // exit
+        }
     }
 }
\ No newline at end of file
@@ -1,8 +1,13 @@
 package Project.Common;
 
 public class TimerPayload extends Payload {
+    // pinned to the value of the original class so clients built before the
+    // deadline fields were added can still deserialize it
+    private static final long serialVersionUID = -1710824541991512537L;
     private int time;
     private TimerType timerType;
+    private long deadline; // server epoch millis when the timer hits 0 (0 if not set)
+    private long serverTime; // server epoch millis when the payload was created
 
     public TimerPayload() {
         setPayloadType(PayloadType.TIME);
@@ -23,4 +28,33 @@ public class TimerPayload extends Payload {
     public void setTime(int time) {
         this.time = time;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return server epoch millis when the timer runs out, 0 if this is a plain
+     *         time update
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return server epoch millis when the payload was created (for clock offset
+     *         estimates)
+     */
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(long serverTime) {
+        this.serverTime = serverTime;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + String.format(" timer=%s time=%d deadline=%d", timerType, time, deadline);
+    }
+}
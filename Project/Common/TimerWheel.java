@@ -0,0 +1,260 @@
+package Project.Common;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single process-wide hashed timing wheel shared by every TimedEvent and
+ * connection check.
+ * <p>
+ * One daemon thread advances the wheel every {@link #TICK_MILLIS}; each
+ * bucket holds the timeouts that land on that slot (with the number of full
+ * rotations they still have to wait). Scheduling and cancelling are O(1) from
+ * any thread; the wheel thread picks up both changes on its next tick.
+ * </p>
+ * <p>
+ * Note: Tasks run through the Executor they were scheduled with, or directly
+ * on the wheel thread if none was given, so they should be short.
+ * </p>
+ */
+public enum TimerWheel {
+    INSTANCE;
+
+    public static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 512; // power of two, ~51s per rotation
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    // Timeout states
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    /**
+     * Handle to a scheduled task
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final Executor executor;
+        private final long deadline; // nanos relative to the wheel's start
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        // bucket links, only touched by the wheel thread
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, Executor executor, long deadline) {
+            this.task = task;
+            this.executor = executor;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it hasn't run yet
+         *
+         * @return true if this call cancelled it
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            INSTANCE.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                if (executor == null) {
+                    task.run();
+                } else {
+                    executor.execute(task);
+                }
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.severe("Timer task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of Timeouts so a cancelled one can be unlinked in O(1)
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        private void expireTimeouts(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    Timeout next = remove(timeout);
+                    INSTANCE.pending.decrementAndGet();
+                    timeout.expire();
+                    timeout = next;
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    // handed over to the wheel thread, which owns the buckets
+    private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    private final long startTime;
+    private long tick = 0;
+
+    private TimerWheel() {
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        startTime = System.nanoTime();
+        Thread worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs the task on the wheel thread after the delay
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return a handle to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, unit, null);
+    }
+
+    /**
+     * Hands the task to the executor after the delay (rounded up to the next
+     * tick)
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @param executor where the task runs (i.e., the owning Room) or null for
+     *                 the wheel thread
+     * @return a handle to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit, Executor executor) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(task, executor, deadline);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return number of tasks waiting to run
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue; // already counted down by removeCancelled()
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / WHEEL_SIZE;
+            // anything already overdue goes in the current bucket
+            wheel[(int) (Math.max(ticks, tick) & MASK)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            pending.decrementAndGet();
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - (System.nanoTime() - startTime)) + 1;
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & MASK)].expireTimeouts(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * This is just for testing/demo
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int delay : new int[] { 250, 1000, 3000 }) {
+            INSTANCE.schedule(() -> System.out.println(String.format("%dms task ran after %dms", delay,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))), delay, TimeUnit.MILLISECONDS);
+        }
+        Timeout cancelled = INSTANCE.schedule(() -> System.out.println("This shouldn't print"), 2,
+                TimeUnit.SECONDS);
+        System.out.println("Cancelled: " + cancelled.cancel());
+        Thread.sleep(3500);
+        System.out.println("Pending: " + INSTANCE.getPendingCount());
+    }
+}
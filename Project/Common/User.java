@@ -85,14 +85,14 @@ public class User {
         this.tookTurn = tookTurn;
     }
 
-    private String choice = null;
+    private Choice choice = null;
     private boolean isEliminated = false;
 
-    public String getChoice() {
+    public Choice getChoice() {
         return choice;
     }
 
-    public void setChoice(String choice) {
+    public void setChoice(Choice choice) {
         this.choice = choice;
     }
 
@@ -104,14 +104,14 @@ public class User {
         this.isEliminated = isEliminated;
     }
 
-    private String lastChoice = null;
+    private Choice lastChoice = null;
     private boolean isAway = false;
 
-    public String getLastChoice() {
+    public Choice getLastChoice() {
         return lastChoice;
     }
 
-    public void setLastChoice(String lastChoice) {
+    public void setLastChoice(Choice lastChoice) {
         this.lastChoice = lastChoice;
     }
 
@@ -0,0 +1,93 @@
+package Project.Server;
+
+/**
+ * Limits applied to each client's OutboundQueue.
+ * <p>
+ * Past the high-water mark the queue starts shedding load (coalescing
+ * superseded state updates and dropping chat); past the hard limit the client
+ * is considered stalled and gets disconnected.
+ * </p>
+ * <p>
+ * Defaults can be overridden with system properties, i.e.,
+ * <code>java -Drps.outbound.maxPayloads=512 Project.Server.Server 3000</code>
+ * </p>
+ */
+public class BackpressurePolicy {
+    public static final BackpressurePolicy DEFAULT = new BackpressurePolicy(1024, 1024 * 1024, 256, 256 * 1024,
+            true, true);
+
+    private final int maxPayloads;
+    private final long maxBytes;
+    private final int highWaterPayloads;
+    private final long highWaterBytes;
+    private final boolean isCoalescing;
+    private final boolean isDroppingChat;
+
+    /**
+     * @param maxPayloads       queued payloads that trigger a disconnect
+     * @param maxBytes          queued (encoded) bytes that trigger a disconnect
+     * @param highWaterPayloads queued payloads past which chat is dropped
+     * @param highWaterBytes    queued bytes past which chat is dropped
+     * @param isCoalescing      replace queued state updates that a newer one
+     *                          supersedes
+     * @param isDroppingChat    drop chat messages while above the high-water mark
+     */
+    public BackpressurePolicy(int maxPayloads, long maxBytes, int highWaterPayloads, long highWaterBytes,
+            boolean isCoalescing, boolean isDroppingChat) {
+        if (maxPayloads <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Outbound limits must be positive");
+        }
+        this.maxPayloads = maxPayloads;
+        this.maxBytes = maxBytes;
+        this.highWaterPayloads = Math.min(highWaterPayloads, maxPayloads);
+        this.highWaterBytes = Math.min(highWaterBytes, maxBytes);
+        this.isCoalescing = isCoalescing;
+        this.isDroppingChat = isDroppingChat;
+    }
+
+    /**
+     * Reads the <code>rps.outbound.*</code> system properties, falling back to
+     * {@link #DEFAULT}
+     *
+     * @return the configured policy
+     */
+    public static BackpressurePolicy fromSystemProperties() {
+        return new BackpressurePolicy(
+                Integer.getInteger("rps.outbound.maxPayloads", DEFAULT.maxPayloads),
+                Long.getLong("rps.outbound.maxBytes", DEFAULT.maxBytes),
+                Integer.getInteger("rps.outbound.highWaterPayloads", DEFAULT.highWaterPayloads),
+                Long.getLong("rps.outbound.highWaterBytes", DEFAULT.highWaterBytes),
+                Boolean.parseBoolean(System.getProperty("rps.outbound.coalesce", "" + DEFAULT.isCoalescing)),
+                Boolean.parseBoolean(System.getProperty("rps.outbound.dropChat", "" + DEFAULT.isDroppingChat)));
+    }
+
+    public int getMaxPayloads() {
+        return maxPayloads;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getHighWaterPayloads() {
+        return highWaterPayloads;
+    }
+
+    public long getHighWaterBytes() {
+        return highWaterBytes;
+    }
+
+    public boolean isCoalescing() {
+        return isCoalescing;
+    }
+
+    public boolean isDroppingChat() {
+        return isDroppingChat;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("max %d payloads/%d bytes, high-water %d payloads/%d bytes, coalesce %s, drop chat %s",
+                maxPayloads, maxBytes, highWaterPayloads, highWaterBytes, isCoalescing, isDroppingChat);
+    }
+}
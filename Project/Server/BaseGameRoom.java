@@ -1,11 +1,14 @@
 package Project.Server;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import Project.Common.Constants;
 import Project.Common.LoggerUtil;
 import Project.Common.Phase;
+import Project.Common.RoomSnapshotPayload;
 import Project.Common.TimedEvent;
+import Project.Common.TimerWheel;
 import Project.Common.TimerType;
 import Project.Exceptions.NotReadyException;
 import Project.Exceptions.PhaseMismatchException;
@@ -25,6 +28,9 @@ public abstract class BaseGameRoom extends Room {
 
     protected boolean allowToggleReady = false;
 
+    // call counters.update() after changing a member's ready/away/eliminated/choice
+    protected final GameCounters counters = new GameCounters();
+
     public BaseGameRoom(String name) {
         super(name);
     }
@@ -78,41 +84,40 @@ public abstract class BaseGameRoom extends Room {
     protected abstract void onClientRemoved(ServerThread client);
 
     @Override
-    protected synchronized void addClient(ServerThread client) {
+    protected void addClient(ServerThread client) {
         if (!isRunning()) { // block action if Room isn't running
             return;
         }
         // do the base Room class logic
         super.addClient(client);
-        new Thread() {
-            @Override
-            public void run() {
-                // sleep 100
-                try {
-                    Thread.sleep(100);
-                    onClientAdded(client);
-                } catch (InterruptedException e) {
-                    LoggerUtil.INSTANCE.severe("Thread sleep interrupted", e);
-                }
-            }
-        }.start();
-
+        if (clientsInRoom.containsKey(client.getClientId())) {
+            counters.add(client);
+        }
+        // give the client a moment before syncing
+        TimerWheel.INSTANCE.schedule(() -> onClientAdded(client), 100, TimeUnit.MILLISECONDS, this::execute);
     }
 
     @Override
-    protected synchronized void removeClient(ServerThread client) {
+    protected void removeClient(ServerThread client) {
         if (!isRunning()) { // block action if Room isn't running
             return;
         }
         LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
         // do the base-class logic
         super.removeClient(client);
+        if (!clientsInRoom.containsKey(client.getClientId())) {
+            counters.remove(client.getClientId());
+        }
         onClientRemoved(client);
     }
 
     @Override
-    protected synchronized void disconnect(ServerThread client) {
+    protected void disconnect(ServerThread client) {
+        long clientId = client.getClientId(); // read first, the client's cleanup may reset it
         super.disconnect(client);
+        if (!clientsInRoom.containsKey(clientId)) {
+            counters.remove(clientId);
+        }
         LoggerUtil.INSTANCE.info("Players in room: " + clientsInRoom.size());
         onClientRemoved(client);
     }
@@ -141,11 +146,9 @@ public abstract class BaseGameRoom extends Room {
             readyTimer = new TimedEvent(30, () -> {
                 // callback to trigger when ready expires
                 checkReadyStatus();
-            });
-            readyTimer.setTickCallback((time) -> {
-                System.out.println("Ready Timer: " + time);
-                sendCurrentTime(TimerType.READY, time);
-            });
+            }, this::execute);
+            readyTimer.setTickCallback((time) -> sendLegacyTime(TimerType.READY, time));
+            sendTimerDeadline(TimerType.READY, readyTimer);
         }
     }
 
@@ -154,8 +157,7 @@ public abstract class BaseGameRoom extends Room {
      * and ready
      */
     private void checkReadyStatus() {
-        long numReady = clientsInRoom.values().stream().filter(p -> p.isReady()).count();
-        if (numReady >= MINIMUM_REQUIRED_TO_START) {
+        if (counters.getReady() >= MINIMUM_REQUIRED_TO_START) {
             resetReadyTimer();
             onSessionStart();
         } else {
@@ -164,7 +166,10 @@ public abstract class BaseGameRoom extends Room {
     }
 
     protected void resetReadyStatus() {
-        clientsInRoom.values().forEach(p -> p.setReady(false));
+        clientsInRoom.values().forEach(p -> {
+            p.setReady(false);
+            counters.update(p);
+        });
         sendResetReadyTrigger();
     }
 
@@ -178,15 +183,30 @@ public abstract class BaseGameRoom extends Room {
         if (currentPhase != phase) {
             currentPhase = phase;
             sendCurrentPhase();
+            publishInfo();
         }
     }
 
+    @Override
+    protected Phase getPhase() {
+        return currentPhase;
+    }
+
+    @Override
+    protected RoomSnapshotPayload createSnapshot() {
+        RoomSnapshotPayload snapshot = super.createSnapshot();
+        snapshot.setPhase(currentPhase);
+        return snapshot;
+    }
+
     // send/sync data to ServerThread(s)
     protected void sendGameEvent(String str) {
         sendGameEvent(str, null);
     }
 
     protected void sendGameEvent(String str, List<Long> targets) {
+        SharedPayload event = new SharedPayload(
+                ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL, str));
         clientsInRoom.values().removeIf(spInRoom -> {
             boolean canSend = false;
             if (targets != null) {
@@ -197,7 +217,7 @@ public abstract class BaseGameRoom extends Room {
                 canSend = true;
             }
             if (canSend) {
-                boolean failedToSend = !spInRoom.sendGameEvent(str);
+                boolean failedToSend = !spInRoom.sendToClient(event);
                 if (failedToSend) {
                     removeClient(spInRoom);
                 }
@@ -214,8 +234,27 @@ public abstract class BaseGameRoom extends Room {
      * @param time      the remaining time or -1 to cancel
      */
     protected void sendCurrentTime(TimerType timerType, int time) {
+        SharedPayload timePayload = new SharedPayload(ServerThread.createTimePayload(timerType, time));
+        clientsInRoom.values().removeIf(spInRoom -> {
+            boolean failedToSend = !spInRoom.sendToClient(timePayload);
+            if (failedToSend) {
+                removeClient(spInRoom);
+            }
+            return failedToSend;
+        });
+    }
+
+    /**
+     * Sends a timer's deadline once; clients count down locally until they get
+     * a correction (i.e., -1 from sendCurrentTime() when it's cancelled)
+     * 
+     * @param timerType
+     * @param timer
+     */
+    protected void sendTimerDeadline(TimerType timerType, TimedEvent timer) {
+        SharedPayload deadline = new SharedPayload(ServerThread.createDeadlinePayload(timerType, timer.getDeadline()));
         clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendCurrentTime(timerType, time);
+            boolean failedToSend = !spInRoom.sendToClient(deadline);
             if (failedToSend) {
                 removeClient(spInRoom);
             }
@@ -223,6 +262,50 @@ public abstract class BaseGameRoom extends Room {
         });
     }
 
+    /**
+     * Per-second time updates, only for clients that can't render a countdown
+     * from a deadline
+     * 
+     * @param timerType
+     * @param time
+     */
+    protected void sendLegacyTime(TimerType timerType, int time) {
+        SharedPayload timePayload = null;
+        for (ServerThread spInRoom : clientsInRoom.values()) {
+            if (spInRoom.rendersCountdown()) {
+                continue;
+            }
+            if (timePayload == null) {
+                timePayload = new SharedPayload(ServerThread.createTimePayload(timerType, time));
+            }
+            if (!spInRoom.sendToClient(timePayload)) {
+                removeClient(spInRoom);
+            }
+        }
+    }
+
+    /**
+     * Syncs a running timer to a single client
+     * 
+     * @param sp
+     * @param timerType
+     * @param timer     may be null if the timer isn't running
+     */
+    protected void syncTimer(ServerThread sp, TimerType timerType, TimedEvent timer) {
+        if (timer != null) {
+            sp.sendToClient(ServerThread.createDeadlinePayload(timerType, timer.getDeadline()));
+        }
+    }
+
+    /**
+     * Syncs the ready timer to a single client
+     * 
+     * @param sp
+     */
+    protected void syncReadyTimer(ServerThread sp) {
+        syncTimer(sp, TimerType.READY, readyTimer);
+    }
+
     /**
      * Syncs the current phase to a single client
      * 
@@ -236,8 +319,9 @@ public abstract class BaseGameRoom extends Room {
      * Sends the current phase to all clients
      */
     protected void sendCurrentPhase() {
+        SharedPayload phasePayload = new SharedPayload(ServerThread.createPhasePayload(currentPhase));
         clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendCurrentPhase(currentPhase);
+            boolean failedToSend = !spInRoom.sendToClient(phasePayload);
             if (failedToSend) {
                 removeClient(spInRoom);
             }
@@ -250,8 +334,9 @@ public abstract class BaseGameRoom extends Room {
      * status
      */
     protected void sendResetReadyTrigger() {
+        SharedPayload resetPayload = new SharedPayload(ServerThread.createResetReadyPayload());
         clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendResetReady();
+            boolean failedToSend = !spInRoom.sendToClient(resetPayload);
             if (failedToSend) {
                 removeClient(spInRoom);
             }
@@ -281,8 +366,10 @@ public abstract class BaseGameRoom extends Room {
      * @param isReady
      */
     protected void sendReadyStatus(ServerThread incomingSP, boolean isReady) {
+        SharedPayload readyPayload = new SharedPayload(
+                ServerThread.createReadyPayload(incomingSP.getClientId(), incomingSP.isReady(), false));
         clientsInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendReadyStatus(incomingSP.getClientId(), incomingSP.isReady());
+            boolean failedToSend = !spInRoom.sendToClient(readyPayload);
             if (failedToSend) {
                 removeClient(spInRoom);
             }
@@ -309,6 +396,7 @@ public abstract class BaseGameRoom extends Room {
                 sp = clientsInRoom.get(sender.getClientId());
                 sp.setReady(!sp.isReady());
             }
+            counters.update(sp);
             startReadyTimer(false); // <-- triggers the next step when it expires
 
             sendReadyStatus(sp, sp.isReady());
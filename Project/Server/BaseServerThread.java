@@ -1,24 +1,68 @@
 package Project.Server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import Project.Common.FrameCodec;
+import Project.Common.LogLimiter;
+import Project.Common.LoggerUtil;
 import Project.Common.Payload;
+import Project.Common.TimerWheel;
 import Project.Common.User;
 
 /**
  * Base class the handles the underlying connection between Client and
  * Server-side
+ * <p>
+ * Note: Despite the name this no longer extends Thread; the Server picks what
+ * runs the read loop (a platform thread, a virtual thread, or an NioEventLoop
+ * for non-blocking connections).
+ * </p>
  */
-public abstract class BaseServerThread extends Thread {
+public abstract class BaseServerThread implements Runnable {
+    // per-payload traces; limited by category (see LoggerConfig#setLimit) so
+    // they can stay on under load
+    private static final LogLimiter RECEIVED_TRACE = LoggerUtil.limiter(BaseServerThread.class, "received");
+    private static final LogLimiter SENDING_TRACE = LoggerUtil.limiter(BaseServerThread.class, "sending");
 
-    protected boolean isRunning = false; // control variable to stop this thread
-    protected ObjectOutputStream out; // exposed here for send()
+    protected volatile boolean isRunning = false; // control variable to stop this thread
+    protected ObjectOutputStream out; // exposed here for send() (legacy object stream clients)
+    protected DataOutputStream frameOut; // exposed here for send() (framed clients)
+    // FrameCodec version picked by the client's handshake, 0 for legacy object
+    // stream clients
+    protected volatile int wireVersion = 0;
     protected Socket client; // communication directly to "my" client
+    protected NioConnection connection; // set instead of client when served by the NioServer event loops
+    private ThreadFactory threadFactory;
+    private Thread readerThread; // runs run() for blocking connections
+    private Thread writerThread; // drains the outbound queue for blocking connections
+    // sendToClient() only enqueues; the writer thread (or the NioEventLoop) does
+    // the socket writes so a slow client can't stall whoever is relaying
+    protected final OutboundQueue outbound;
     protected User user = new User();
-    protected Room currentRoom;
+    // read by the connection threads, changed by Server.joinRoom()
+    protected volatile Room currentRoom;
+
+    protected BaseServerThread() {
+        this(Server.INSTANCE.getBackpressurePolicy());
+    }
+
+    /**
+     * @param policy limits for this client's outbound queue
+     */
+    protected BaseServerThread(BackpressurePolicy policy) {
+        outbound = new OutboundQueue(policy);
+    }
 
     /**
      * Returns the current Room associated with this ServerThread
@@ -45,6 +89,19 @@ public abstract class BaseServerThread extends Thread {
         currentRoom = room;
     }
 
+    /**
+     * Starts the blocking read loop on a thread created by the given factory
+     * (i.e., Thread.ofPlatform().factory() or Thread.ofVirtual().factory()); the
+     * writer thread is created from the same factory once the streams are open
+     * 
+     * @param threadFactory
+     */
+    protected void start(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        readerThread = threadFactory.newThread(this);
+        readerThread.start();
+    }
+
     /**
      * Returns the status of this ServerThread
      * 
@@ -90,6 +147,26 @@ public abstract class BaseServerThread extends Thread {
      */
     protected abstract void info(String message);
 
+    /**
+     * Same as {@link #info(String)} but the message is only formatted (and the
+     * argument's toString() only called) if INFO is enabled; used on the
+     * per-payload paths
+     * 
+     * @param format
+     * @param arg
+     */
+    protected abstract void info(String format, Object arg);
+
+    /**
+     * Same as {@link #info(String, Object)} but skipped if the call site is
+     * over its limit
+     * 
+     * @param site
+     * @param format
+     * @param arg
+     */
+    protected abstract void info(LogLimiter site, String format, Object arg);
+
     /**
      * Triggered when object is fully initialized
      */
@@ -103,27 +180,167 @@ public abstract class BaseServerThread extends Thread {
     protected abstract void processPayload(Payload payload);
 
     /**
-     * Sends the payload over the socket
+     * Entry point for every decoded Payload regardless of transport
+     * 
+     * @param payload
+     */
+    protected void handleIncoming(Payload payload) {
+        info(RECEIVED_TRACE, "Received from my client: %s", payload);
+        processPayload(payload);
+    }
+
+    /**
+     * Disconnects the client if it didn't send its name shortly after connecting
+     */
+    protected void checkNameReceived() {
+        if (isRunning && (getClientName() == null || getClientName().isBlank())) {
+            info("Client name not received. Disconnecting");
+            disconnect();
+        }
+    }
+
+    /**
+     * Queues the payload for this client's writer
      * 
      * @param payload
-     * @return true if no errors were encountered
+     * @return false if the client isn't keeping up (outbound queue passed its
+     *         hard limit)
      */
     protected boolean sendToClient(Payload payload) {
+        return sendToClient(new SharedPayload(payload));
+    }
+
+    /**
+     * Queues a payload that's being sent to several clients; the frame is only
+     * encoded by the first recipient using a given wire version
+     * 
+     * @param shared
+     * @return false if the client isn't keeping up (outbound queue passed its
+     *         hard limit)
+     */
+    protected boolean sendToClient(SharedPayload shared) {
         if (!isRunning) {
             return true;
         }
+        Payload payload = shared.getPayload();
+        info(SENDING_TRACE, "Sending to client: %s", payload);
+        ByteBuffer frame = null;
+        if (connection != null || frameOut != null) {
+            // encoded up front so the queue can account for bytes
+            try {
+                frame = shared.getFrame(wireVersion);
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.severe("Failed to encode payload", e);
+                return false;
+            }
+        }
+        switch (outbound.offer(payload, frame)) {
+            case OVERFLOW:
+                LoggerUtil.INSTANCE.warning(String.format("%s isn't keeping up, disconnecting (%s)",
+                        getDisplayName(), outbound));
+                onWriteFailed();
+                return false;
+            case HIGH_WATER:
+                LoggerUtil.INSTANCE.warning(String.format("%s is falling behind (%s)", getDisplayName(), outbound));
+                break;
+            case DROPPED:
+                info("Outbound queue above high-water mark, dropped %s", payload.getPayloadType());
+                return true;
+            default:
+                break;
+        }
+        if (connection != null) {
+            connection.scheduleFlush();
+        }
+        return true;
+    }
+
+    /**
+     * Next queued entry for the NioEventLoop to write
+     * 
+     * @return the entry or null if nothing is queued
+     */
+    protected OutboundQueue.Entry pollOutbound() {
+        return outbound.poll();
+    }
+
+    /**
+     * @return number of payloads waiting to be written to this client
+     */
+    public int getOutboundDepth() {
+        return outbound.getDepth();
+    }
+
+    /**
+     * @return encoded bytes waiting to be written to this client
+     */
+    public long getOutboundBytes() {
+        return outbound.getBytes();
+    }
+
+    /**
+     * @return summary of the outbound queue (depth, peak, coalesced and dropped
+     *         payloads)
+     */
+    public String getOutboundStats() {
+        return outbound.toString();
+    }
+
+    /**
+     * Writer loop for blocking connections: waits for the next payload and then
+     * writes everything that queued up in the meantime before a single flush
+     */
+    private void writeLoop() {
         try {
-            info("Sending to client: " + payload);
-            out.writeObject(payload);
-            out.flush();
-            return true;
+            while (isRunning) {
+                OutboundQueue.Entry next = outbound.take();
+                do {
+                    ByteBuffer frame = next.getFrame();
+                    if (frame != null) {
+                        frameOut.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                    } else {
+                        out.writeObject(next.getPayload());
+                    }
+                } while ((next = outbound.poll()) != null);
+                if (frameOut != null) {
+                    frameOut.flush();
+                } else {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            // disconnect() or cleanup() stopped the writer
         } catch (IOException e) {
-            info("Error sending message to client (most likely disconnected)");
-            // comment this out to inspect the stack trace
-            // e.printStackTrace();
-            cleanup();
-            return false;
+            if (isRunning) {
+                info("Error sending message to client (most likely disconnected)");
+                // comment this out to inspect the stack trace
+                // e.printStackTrace();
+                onWriteFailed();
+            }
+        }
+    }
+
+    /**
+     * Removes the client from its Room and closes the connection when it can't
+     * be written to (a failed write or an overflowing outbound queue); callers
+     * don't have to check the return value of a send for the client to be
+     * dropped. Only the first call does anything.
+     */
+    private void onWriteFailed() {
+        synchronized (this) {
+            if (!isRunning) {
+                return;
+            }
+            isRunning = false;
+        }
+        Room room = currentRoom;
+        if (room != null) {
+            room.handleDisconnect(this);
+        }
+        if (readerThread != null && readerThread != Thread.currentThread()) {
+            readerThread.interrupt();
         }
+        cleanup();
     }
 
     /**
@@ -136,26 +353,94 @@ public abstract class BaseServerThread extends Thread {
         }
         info("Thread being disconnected by server");
         isRunning = false;
-        this.interrupt(); // breaks out of blocking read in the run() method
+        if (readerThread != null) {
+            readerThread.interrupt(); // breaks out of blocking read in the run() method
+        }
         cleanup(); // good practice to ensure data is written out immediately
     }
 
+    /**
+     * Triggered by the NioConnection when the client closes the channel
+     */
+    protected void onConnectionClosed() {
+        if (currentRoom != null) {
+            currentRoom.handleDisconnect(this);
+        }
+        isRunning = false;
+        info("Connection closed. Cleaning up connection");
+        cleanup();
+    }
+
+    /**
+     * @return true if the client renders countdowns from a single deadline
+     *         payload (older clients expect a time update every second)
+     */
+    protected boolean rendersCountdown() {
+        return wireVersion >= FrameCodec.VERSION_BINARY;
+    }
+
+    /**
+     * @return true if the client applies a RoomSnapshotPayload on join and
+     *         RoomMembershipPayload batches after it (older clients expect the
+     *         member list, game state and each join/leave one payload at a
+     *         time)
+     */
+    protected boolean readsRoomSnapshot() {
+        return wireVersion >= FrameCodec.VERSION_BINARY;
+    }
+
+    /**
+     * Sets the FrameCodec version the client asked for in its handshake
+     * 
+     * @param wireVersion
+     */
+    protected void setWireVersion(int wireVersion) {
+        this.wireVersion = wireVersion;
+    }
+
+    /**
+     * Peeks at the first bytes sent by the client to pick the wire format
+     * 
+     * @param in
+     * @return the framed protocol version or 0 for a raw object stream
+     * @throws IOException
+     */
+    private int readHandshake(BufferedInputStream in) throws IOException {
+        in.mark(FrameCodec.HEADER_LENGTH);
+        int header = new DataInputStream(in).readInt();
+        int version = FrameCodec.getVersion(header);
+        if (version > 0) {
+            return version;
+        }
+        if ((header & 0xFFFFFF00) == FrameCodec.MAGIC) {
+            throw new StreamCorruptedException("Unsupported protocol version " + (header & 0xFF));
+        }
+        // legacy client, give the ObjectInputStream its stream header back
+        in.reset();
+        return 0;
+    }
+
     @Override
     public void run() {
         info("Thread starting");
-        try (ObjectOutputStream out = new ObjectOutputStream(client.getOutputStream());
-                ObjectInputStream in = new ObjectInputStream(client.getInputStream());) {
-            this.out = out;
+        try {
+            BufferedInputStream rawIn = new BufferedInputStream(client.getInputStream());
+            wireVersion = readHandshake(rawIn);
+            boolean isFramed = wireVersion > 0;
+            DataInputStream frameIn = null;
+            ObjectInputStream in = null;
+            if (isFramed) {
+                frameOut = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+                frameIn = new DataInputStream(rawIn);
+            } else {
+                out = new ObjectOutputStream(client.getOutputStream());
+                in = new ObjectInputStream(rawIn);
+            }
+            info("Client is using the %s protocol", FrameCodec.describe(wireVersion));
             isRunning = true;
-            new java.util.Timer().schedule(new java.util.TimerTask() {
-                @Override
-                public void run() {
-                    if (getClientName() == null || getClientName().isBlank()) {
-                        info("Client name not received. Disconnecting");
-                        disconnect();
-                    }
-                }
-            }, 3000);
+            writerThread = threadFactory.newThread(this::writeLoop);
+            writerThread.start();
+            TimerWheel.INSTANCE.schedule(this::checkNameReceived, 3, TimeUnit.SECONDS);
             Payload fromClient;
             /**
              * isRunning is a flag to let us manage the loop exit condition
@@ -166,10 +451,10 @@ public abstract class BaseServerThread extends Thread {
              */
             while (isRunning) {
                 try {
-                    fromClient = (Payload) in.readObject(); // blocking method
+                    // blocking method
+                    fromClient = isFramed ? FrameCodec.readFrame(frameIn, wireVersion) : (Payload) in.readObject();
                     if (fromClient != null) {
-                        info("Received from my client: " + fromClient);
-                        processPayload(fromClient);
+                        handleIncoming(fromClient);
                     } else {
                         throw new IOException("Connection interrupted"); // Specific exception for a clean break
                     }
@@ -210,12 +495,29 @@ public abstract class BaseServerThread extends Thread {
      */
     protected void cleanup() {
         info("ServerThread cleanup() start");
+        if (writerThread != null && writerThread != Thread.currentThread()) {
+            writerThread.interrupt();
+        }
+        outbound.clear();
+        Server.INSTANCE.getRoomDirectory().unsubscribe(this);
+        Room room = currentRoom;
         try {
             // close server-side end of connection
             currentRoom = null;
-            out.close();
-            client.close();
-            user.reset();
+            if (connection != null) {
+                connection.close(false);
+            } else {
+                // Note: closing out/frameOut here could block on a stalled client
+                // (close flushes); closing the socket closes both streams
+                client.close();
+            }
+            if (room != null) {
+                // the room may still have this client's disconnect queued, let
+                // it run with the user data before it's cleared
+                room.execute(user::reset);
+            } else {
+                user.reset();
+            }
             info("Closed Server-side Socket");
         } catch (IOException e) {
             info("Client already closed");
@@ -0,0 +1,280 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Phase;
+
+/**
+ * Live head counts of a game room (ready, away, eliminated, active, picked,
+ * remaining), so rules like "has everyone picked" are O(1) instead of a scan
+ * of every client per action.
+ * <p>
+ * Each member's contribution is kept as a bit mask of the groups it's in;
+ * after changing a member's state, {@link #update(ServerThread)} diffs the new
+ * mask against the old one. Adding or removing the same member twice is
+ * harmless.
+ * </p>
+ * <p>
+ * Note: Not thread safe, only used from the room's mailbox.
+ * </p>
+ */
+public class GameCounters {
+    private static final int READY = 0;
+    private static final int AWAY = 1;
+    private static final int ELIMINATED = 2;
+    private static final int ACTIVE = 3; // ready, not away and not eliminated
+    private static final int PICKED = 4; // not eliminated and has a choice
+    private static final int REMAINING = 5; // ready and not eliminated (still in the game)
+    private static final String[] NAMES = { "ready", "away", "eliminated", "active", "picked", "remaining" };
+
+    private final int[] counts = new int[NAMES.length];
+    private final HashMap<Long, Integer> masks = new HashMap<>();
+
+    private static int maskOf(ServerThread client) {
+        int mask = 0;
+        if (client.isReady()) {
+            mask |= 1 << READY;
+        }
+        if (client.isAway()) {
+            mask |= 1 << AWAY;
+        }
+        if (client.isEliminated()) {
+            mask |= 1 << ELIMINATED;
+        } else {
+            if (client.getChoice() != null) {
+                mask |= 1 << PICKED;
+            }
+            if (client.isReady()) {
+                mask |= 1 << REMAINING;
+                if (!client.isAway()) {
+                    mask |= 1 << ACTIVE;
+                }
+            }
+        }
+        return mask;
+    }
+
+    private void apply(int mask, int delta) {
+        for (int i = 0; i < counts.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                counts[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * Starts counting a member (or recounts it if it's already counted)
+     *
+     * @param client
+     */
+    public void add(ServerThread client) {
+        int mask = maskOf(client);
+        Integer previous = masks.put(client.getClientId(), mask);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        apply(mask, 1);
+    }
+
+    /**
+     * Stops counting a member
+     *
+     * @param clientId
+     */
+    public void remove(long clientId) {
+        Integer previous = masks.remove(clientId);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    /**
+     * Recounts a member after its state changed; ignored if it isn't counted
+     *
+     * @param client
+     */
+    public void update(ServerThread client) {
+        Integer previous = masks.get(client.getClientId());
+        if (previous == null) {
+            return;
+        }
+        int mask = maskOf(client);
+        if (mask != previous) {
+            masks.put(client.getClientId(), mask);
+            apply(previous, -1);
+            apply(mask, 1);
+        }
+    }
+
+    public int getReady() {
+        return counts[READY];
+    }
+
+    public int getAway() {
+        return counts[AWAY];
+    }
+
+    public int getEliminated() {
+        return counts[ELIMINATED];
+    }
+
+    /**
+     * @return members who are playing this round (ready, not away and not
+     *         eliminated)
+     */
+    public int getActive() {
+        return counts[ACTIVE];
+    }
+
+    /**
+     * @return members who aren't eliminated and have picked
+     */
+    public int getPicked() {
+        return counts[PICKED];
+    }
+
+    /**
+     * @return members who are still in the game (ready and not eliminated),
+     *         away or not
+     */
+    public int getRemaining() {
+        return counts[REMAINING];
+    }
+
+    public int size() {
+        return masks.size();
+    }
+
+    /**
+     * Compares the counters with a full recount
+     *
+     * @param members everyone in the room
+     * @return null if they match, otherwise what drifted
+     */
+    public String verify(Collection<ServerThread> members) {
+        GameCounters recount = new GameCounters();
+        members.forEach(recount::add);
+        List<String> drift = new ArrayList<>();
+        if (recount.size() != size()) {
+            drift.add(String.format("members %d (recount %d)", size(), recount.size()));
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != recount.counts[i]) {
+                drift.add(String.format("%s %d (recount %d)", NAMES[i], counts[i], recount.counts[i]));
+            }
+        }
+        return drift.isEmpty() ? null : String.join(", ", drift);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("members=%d", size()));
+        for (int i = 0; i < counts.length; i++) {
+            sb.append(String.format(" %s=%d", NAMES[i], counts[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This is just for testing/demo; drives a GameRoom with detached clients
+     * through random joins, readies, picks, away toggles, host settings, leaves
+     * and disconnects, checking the room's counters against a recount after
+     * each handler (and the timer callbacks it scheduled) runs
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("counters-demo.log");
+        config.setConsoleLogLevel(Level.OFF);
+        LoggerUtil.INSTANCE.setConfig(config);
+        Random random = new Random(42);
+        // the room's mailbox is drained here, on the main thread, so timer
+        // callbacks run between handlers like they would on a room worker
+        ConcurrentLinkedQueue<Runnable> drains = new ConcurrentLinkedQueue<>();
+        GameRoom room = new GameRoom("counters-demo") {
+            @Override
+            protected void publishInfo() {
+                // no room directory without a Server
+            }
+        };
+        room.setExecutor(drains::add);
+        List<ServerThread> pool = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            ServerThread client = new ServerThread(BackpressurePolicy.DEFAULT);
+            client.setClientId(i + 1);
+            client.setClientName("Player" + (i + 1));
+            pool.add(client);
+        }
+        String[] picks = { "r", "p", "s", "l", "sp", "x" };
+        String[] settings = { "rps5 on", "rps5 off", "rps5_final3 on", "rps5_final3 off", "cooldown on",
+                "cooldown off", "mass on", "mass off" };
+        HashMap<String, Integer> handled = new HashMap<>();
+        int sessions = 0;
+        for (int step = 0; step < steps; step++) {
+            List<ServerThread> members = new ArrayList<>(room.clientsInRoom.values());
+            List<ServerThread> others = new ArrayList<>(pool);
+            others.removeAll(members);
+            int roll = random.nextInt(100);
+            String action;
+            Runnable task;
+            if (members.size() < 2 || (roll < 5 && !others.isEmpty())) {
+                ServerThread client = others.get(random.nextInt(others.size()));
+                action = "join";
+                task = () -> room.addClient(client);
+            } else {
+                ServerThread client = members.get(random.nextInt(members.size()));
+                if (roll < 8) {
+                    action = "leave";
+                    task = () -> room.removeClient(client);
+                } else if (roll < 11) {
+                    action = "disconnect";
+                    task = () -> room.handleDisconnect(client);
+                } else if (roll < 16) {
+                    action = "away";
+                    task = () -> room.handleSettings(client, "away");
+                } else if (roll < 20) {
+                    ServerThread host = room.clientsInRoom.getOrDefault(room.hostId, client);
+                    String setting = settings[random.nextInt(settings.length)];
+                    action = "settings";
+                    task = () -> room.handleSettings(host, setting);
+                } else if (roll < 55) {
+                    action = "ready";
+                    task = () -> room.handleReady(client);
+                } else {
+                    String pick = picks[random.nextInt(picks.length)];
+                    action = "pick";
+                    task = () -> room.handleTurnAction(client, pick);
+                }
+            }
+            Phase before = room.currentPhase;
+            room.execute(task);
+            Runnable drain;
+            while ((drain = drains.poll()) != null) {
+                drain.run();
+            }
+            if (before == Phase.READY && room.currentPhase == Phase.IN_PROGRESS) {
+                sessions++;
+            }
+            handled.merge(action, 1, Integer::sum);
+            String drift = room.counters.verify(room.clientsInRoom.values());
+            if (drift != null) {
+                System.out.println(String.format("Step %d (%s) drifted: %s", step, action, drift));
+                return;
+            }
+        }
+        System.out.println(String.format("%d handler calls %s over %d sessions, counters matched a recount after each",
+                steps, handled, sessions));
+        System.out.println(String.format("Final: %s", room.counters));
+        LoggerUtil.INSTANCE.flush(2, TimeUnit.SECONDS);
+    }
+}
@@ -1,14 +1,22 @@
 package Project.Server;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
+import Project.Common.BattleResult;
+import Project.Common.Choice;
+import Project.Common.ChoiceRules;
 import Project.Common.Constants;
 import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
 import Project.Common.Phase;
+import Project.Common.RoundStatePayload;
+import Project.Common.RoomSnapshotPayload;
+import Project.Common.ScoreboardPayload;
 import Project.Common.TimedEvent;
 import Project.Common.TimerType;
 import Project.Exceptions.NotReadyException;
@@ -16,15 +24,25 @@ import Project.Exceptions.PhaseMismatchException;
 import Project.Exceptions.PlayerNotFoundException;
 
 public class GameRoom extends BaseGameRoom {
+    // rooms this big always settle rounds from the choice counts
+    public static final int MASS_MATCH_MIN_PLAYERS = 1000;
 
     // used for general rounds (usually phase-based turns)
     private TimedEvent roundTimer = null;
     private int round = 0;
+    // points as of the last scoreboard, to send only what changed
+    private final HashMap<Long, Integer> syncedPoints = new HashMap<>();
+    // how the last round ended, completed and sent by onRoundStart()
+    private RoundStatePayload pendingRoundState = null;
+    // picks are checked and settled with these; picked when a round starts so
+    // a settings change or someone going away can't change them mid-round
+    private ChoiceRules roundRules = ChoiceRules.RPS;
 
     // Feature toggles
     private boolean enableRPS5 = false;
     private boolean enableRPS5Final3 = false;
     private boolean enableCooldown = false;
+    private boolean enableMassMatch = false;
 
     public GameRoom(String name) {
         super(name);
@@ -33,16 +51,32 @@ public class GameRoom extends BaseGameRoom {
     /** {@inheritDoc} */
     @Override
     protected void onClientAdded(ServerThread sp) {
-        // sync GameRoom state to new client
-        syncCurrentPhase(sp);
-        syncReadyStatus(sp);
-        if (currentPhase != Phase.READY) {
-            syncPlayerPoints(sp);
+        // sync GameRoom state to new client (phase, ready, points and settings
+        // were already in their snapshot if they read one)
+        if (!sp.readsRoomSnapshot()) {
+            syncCurrentPhase(sp);
+            syncReadyStatus(sp);
+            if (currentPhase != Phase.READY) {
+                syncPlayerPoints(sp);
+            }
+            // Sync settings to new client
+            sp.sendToClient(createSettingsPayload("rps5", enableRPS5 ? "on" : "off"));
+            sp.sendToClient(createSettingsPayload("rps5_final3", enableRPS5Final3 ? "on" : "off"));
+            sp.sendToClient(createSettingsPayload("cooldown", enableCooldown ? "on" : "off"));
+            sp.sendToClient(createSettingsPayload("mass", enableMassMatch ? "on" : "off"));
         }
-        // Sync settings to new client
-        sp.sendToClient(createSettingsPayload("rps5", enableRPS5 ? "on" : "off"));
-        sp.sendToClient(createSettingsPayload("rps5_final3", enableRPS5Final3 ? "on" : "off"));
-        sp.sendToClient(createSettingsPayload("cooldown", enableCooldown ? "on" : "off"));
+        syncReadyTimer(sp);
+        syncTimer(sp, TimerType.ROUND, roundTimer);
+    }
+
+    @Override
+    protected RoomSnapshotPayload createSnapshot() {
+        RoomSnapshotPayload snapshot = super.createSnapshot();
+        snapshot.getSettings().put("rps5", enableRPS5 ? "on" : "off");
+        snapshot.getSettings().put("rps5_final3", enableRPS5Final3 ? "on" : "off");
+        snapshot.getSettings().put("cooldown", enableCooldown ? "on" : "off");
+        snapshot.getSettings().put("mass", enableMassMatch ? "on" : "off");
+        return snapshot;
     }
 
     /** {@inheritDoc} */
@@ -64,10 +98,8 @@ public class GameRoom extends BaseGameRoom {
 
     // timer handlers
     private void startRoundTimer() {
-        roundTimer = new TimedEvent(30, () -> onRoundEnd());
-        roundTimer.setTickCallback((time) -> {
-            sendCurrentTime(TimerType.ROUND, time);
-        });
+        roundTimer = new TimedEvent(30, () -> onRoundEnd(), this::execute);
+        roundTimer.setTickCallback((time) -> sendLegacyTime(TimerType.ROUND, time));
     }
 
     private void resetRoundTimer() {
@@ -84,10 +116,12 @@ public class GameRoom extends BaseGameRoom {
         LoggerUtil.INSTANCE.info("onSessionStart() start");
         changePhase(Phase.IN_PROGRESS);
         round = 0;
+        syncedPoints.clear();
         // reset elimination status and lastChoice
         clientsInRoom.values().forEach(client -> {
             client.setEliminated(false);
             client.setLastChoice(null);
+            counters.update(client);
         });
         LoggerUtil.INSTANCE.info("onSessionStart() end");
         onRoundStart();
@@ -98,16 +132,22 @@ public class GameRoom extends BaseGameRoom {
     protected void onRoundStart() {
         LoggerUtil.INSTANCE.info("onRoundStart() start");
         resetRoundTimer();
+        RoundStatePayload roundState = pendingRoundState != null ? pendingRoundState : new RoundStatePayload();
+        pendingRoundState = null;
+        ChoiceRules settledRules = roundRules; // the last round's, if roundState has its results
         // Reset choices for active players
         clientsInRoom.values().forEach(client -> {
             client.setChoice(null);
             client.setTookTurn(false); // Using tookTurn to track if they picked
+            counters.update(client);
         });
-        sendResetTurnStatus(); // Clears visuals on client
 
         round++;
-        sendGameEvent(String.format("Round %d has started", round));
+        roundRules = getActiveRules();
         startRoundTimer();
+        roundState.setRound(round);
+        roundState.setDeadline(roundTimer.getDeadline());
+        sendRoundState(roundState, settledRules); // also clears turn visuals on the client
         LoggerUtil.INSTANCE.info("onRoundStart() end");
     }
 
@@ -115,7 +155,14 @@ public class GameRoom extends BaseGameRoom {
     @Override
     protected void onRoundEnd() {
         LoggerUtil.INSTANCE.info("onRoundEnd() start");
-        resetRoundTimer();
+        // the round state tells everyone else whether a new timer started
+        if (roundTimer != null) {
+            roundTimer.cancel();
+            roundTimer = null;
+            sendLegacyTime(TimerType.ROUND, -1);
+        }
+        RoundStatePayload roundState = new RoundStatePayload();
+        roundState.setRound(round);
 
         // Update last choice for cooldowns (before clearing)
         clientsInRoom.values().forEach(client -> {
@@ -125,39 +172,48 @@ public class GameRoom extends BaseGameRoom {
         });
 
         // Eliminate those who didn't pick (SKIP Away/Spectators)
-        clientsInRoom.values().stream()
+        roundState.setNoPick(clientsInRoom.values().stream()
                 .filter(client -> !client.isEliminated() && client.getChoice() == null && !client.isAway()
                         && !client.isSpectator())
-                .forEach(client -> {
+                .peek(client -> {
                     client.setEliminated(true);
-                    sendGameEvent(client.getDisplayName() + " eliminated (did not pick)");
-                });
+                    counters.update(client);
+                })
+                .mapToLong(ServerThread::getClientId)
+                .toArray());
 
         // Process Battles
-        processBattles();
+        ChoiceRules rules = roundRules;
+        if (isMassMatch()) {
+            processMassMatch(roundState, rules);
+        } else {
+            processBattles(roundState, rules);
+        }
+        fillScoreboard(roundState);
 
         // Check Game Over
-        long activeCount = clientsInRoom.values().stream()
-                .filter(c -> !c.isEliminated() && !c.isSpectator())
-                .count();
+        long activeCount = counters.getRemaining();
         if (activeCount == 1) {
             ServerThread winner = clientsInRoom.values().stream()
                     .filter(c -> !c.isEliminated() && !c.isSpectator())
                     .findFirst()
                     .orElse(null);
-            sendGameEvent("Game Over! Winner: " + (winner != null ? winner.getDisplayName() : "Unknown"));
+            roundState.setMessage("Game Over! Winner: " + (winner != null ? winner.getDisplayName() : "Unknown"));
+            sendRoundState(roundState, rules);
             onSessionEnd();
         } else if (activeCount == 0 && clientsInRoom.size() > 0) { // Only game over if players existed
-            sendGameEvent("Game Over! It's a Tie (No survivors)");
+            roundState.setMessage("Game Over! It's a Tie (No survivors)");
+            sendRoundState(roundState, rules);
             onSessionEnd();
         } else {
+            pendingRoundState = roundState;
             onRoundStart();
         }
 
         LoggerUtil.INSTANCE.info("onRoundEnd() end");
     }
 
-    private void processBattles() {
+    private void processBattles(RoundStatePayload roundState, ChoiceRules rules) {
         List<ServerThread> activePlayers = clientsInRoom.values().stream()
                 .filter(c -> !c.isEliminated() && c.getChoice() != null && !c.isAway() && !c.isSpectator())
                 .collect(Collectors.toList());
@@ -167,7 +223,7 @@ public class GameRoom extends BaseGameRoom {
         }
 
         // Round-robin: i vs (i+1)%size
-        StringBuilder battleLog = new StringBuilder("Battle Results:\n");
+        List<BattleResult> battles = new ArrayList<>();
         // Track stats to apply after all checks
         List<ServerThread> eliminatedThisRound = new ArrayList<>();
 
@@ -175,54 +231,98 @@ public class GameRoom extends BaseGameRoom {
             ServerThread attacker = activePlayers.get(i);
             ServerThread defender = activePlayers.get((i + 1) % activePlayers.size());
 
-            int result = compareChoices(attacker.getChoice(), defender.getChoice());
-
-            String logLine = String.format("%s(%s) vs %s(%s): ",
-                    attacker.getDisplayName(), attacker.getChoice(),
-                    defender.getDisplayName(), defender.getChoice());
+            int result = rules.compare(attacker.getChoice(), defender.getChoice());
+            battles.add(new BattleResult(attacker.getClientId(), attacker.getChoice(), defender.getClientId(),
+                    defender.getChoice(), result));
 
             if (result == 1) { // Attacker Wins
-                logLine += attacker.getDisplayName() + " Wins!";
                 attacker.changePoints(1);
                 eliminatedThisRound.add(defender);
             } else if (result == -1) { // Defender Wins
-                logLine += defender.getDisplayName() + " Wins!";
                 defender.changePoints(1);
                 eliminatedThisRound.add(attacker);
-            } else {
-                logLine += "Tie!";
             }
-            battleLog.append(logLine).append("\n");
         }
-
-        sendGameEvent(battleLog.toString());
-        syncPlayerPoints(null); // Sync all
+        roundState.setBattles(battles);
 
         // Apply eliminations
-        eliminatedThisRound.forEach(client -> {
-            if (!client.isEliminated()) { // Prevent double elimination msg
-                client.setEliminated(true);
-                sendGameEvent(client.getDisplayName() + " has been eliminated!");
+        roundState.setEliminated(eliminatedThisRound.stream()
+                .filter(client -> !client.isEliminated()) // Prevent double elimination msg
+                .peek(client -> {
+                    client.setEliminated(true);
+                    counters.update(client);
+                })
+                .mapToLong(ServerThread::getClientId)
+                .toArray());
+    }
+
+    /**
+     * @return true if this round is settled from the choice counts instead of
+     *         pairings
+     */
+    private boolean isMassMatch() {
+        return enableMassMatch || clientsInRoom.size() >= MASS_MATCH_MIN_PLAYERS;
+    }
+
+    /**
+     * Settles the round from how many players picked each choice, as if
+     * everyone battled everyone: players whose choice won on balance get a
+     * point, those whose choice lost on balance are eliminated and a balanced
+     * round (i.e., everyone picked the same) eliminates nobody.
+     * <p>
+     * Only the counts are sent, not a battle per pair.
+     * </p>
+     */
+    private void processMassMatch(RoundStatePayload roundState, ChoiceRules rules) {
+        int[] counts = new int[Choice.values().length];
+        int picked = 0;
+        for (ServerThread client : clientsInRoom.values()) {
+            if (!client.isEliminated() && client.getChoice() != null && !client.isAway() && !client.isSpectator()) {
+                counts[client.getChoice().ordinal()]++;
+                picked++;
             }
-        });
+        }
+        if (picked < 2) {
+            return; // Needs at least 2 to battle
+        }
+        roundState.setChoiceCounts(counts);
+        int[] net = rules.net(counts);
+        roundState.setEliminated(clientsInRoom.values().stream()
+                .filter(c -> !c.isEliminated() && c.getChoice() != null && !c.isAway() && !c.isSpectator())
+                .peek(c -> {
+                    if (net[c.getChoice().ordinal()] > 0) {
+                        c.changePoints(1);
+                    }
+                })
+                .filter(c -> net[c.getChoice().ordinal()] < 0)
+                .peek(c -> {
+                    c.setEliminated(true);
+                    counters.update(c);
+                })
+                .mapToLong(ServerThread::getClientId)
+                .toArray());
     }
 
-    // 1 = p1 wins, -1 = p2 wins, 0 = tie
-    // 1 = p1 wins, -1 = p2 wins, 0 = tie
-    private int compareChoices(String p1, String p2) {
-        if (p1.equals(p2))
-            return 0;
-        if (p1.equals("r"))
-            return (p2.equals("s") || p2.equals("l")) ? 1 : -1;
-        if (p1.equals("p"))
-            return (p2.equals("r") || p2.equals("sp")) ? 1 : -1;
-        if (p1.equals("s"))
-            return (p2.equals("p") || p2.equals("l")) ? 1 : -1;
-        if (p1.equals("l"))
-            return (p2.equals("sp") || p2.equals("p")) ? 1 : -1;
-        if (p1.equals("sp"))
-            return (p2.equals("s") || p2.equals("r")) ? 1 : -1;
-        return 0;
+    /**
+     * RPS-5 can be off, on, or only on once the game is down to its final 3
+     *
+     * @return the rules for a round that's starting now
+     */
+    private ChoiceRules getActiveRules() {
+        if (!enableRPS5) {
+            return ChoiceRules.RPS;
+        }
+        if (enableRPS5Final3) {
+            long activeCount = counters.getActive();
+            if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+                LoggerUtil.INSTANCE.info(String.format("RPS5 Final 3 Check: Active=%d, Total=%d, Enabled=%s",
+                        activeCount, clientsInRoom.size(), enableRPS5Final3));
+            }
+            if (activeCount > 3) {
+                return ChoiceRules.RPS;
+            }
+        }
+        return ChoiceRules.RPSLS;
     }
 
     /** {@inheritDoc} */
@@ -232,6 +332,12 @@ public class GameRoom extends BaseGameRoom {
         resetReadyStatus();
         resetTurnStatus();
         changePhase(Phase.READY);
+        // cheap once per session, and a bug here would quietly stall games; not
+        // rebuilt so the bug gets fixed instead of hidden (see GameCounters.main)
+        String drift = counters.verify(clientsInRoom.values());
+        if (drift != null) {
+            LoggerUtil.INSTANCE.severe(String.format("Room %s counters drifted: %s", getName(), drift));
+        }
         // Show scoreboard
         List<ServerThread> sorted = clientsInRoom.values().stream()
                 .sorted((a, b) -> Integer.compare(b.getPoints(), a.getPoints()))
@@ -260,11 +366,6 @@ public class GameRoom extends BaseGameRoom {
 
     // send/sync data to ServerThread(s)
     private void syncPlayerPoints(ServerThread incomingClient) {
-        // If incoming is null, sync everyone
-        if (incomingClient == null) {
-            clientsInRoom.values().forEach(client -> sendPlayerPoints(client));
-            return;
-        }
         clientsInRoom.values().forEach(serverUser -> {
             if (serverUser.getClientId() != incomingClient.getClientId()) {
                 incomingClient.sendPlayerPoints(serverUser.getClientId(), serverUser.getPoints());
@@ -272,21 +373,112 @@ public class GameRoom extends BaseGameRoom {
         });
     }
 
-    private void sendPlayerPoints(ServerThread sp) {
-        clientsInRoom.values().forEach(spInRoom -> {
-            spInRoom.sendPlayerPoints(sp.getClientId(), sp.getPoints());
-        });
+    /**
+     * Adds the points that changed since the last scoreboard. It's a delta
+     * when less than half the room changed, otherwise the full scoreboard.
+     * 
+     * @param scoreboard left empty if no points changed
+     */
+    private void fillScoreboard(ScoreboardPayload scoreboard) {
+        List<ServerThread> changed = clientsInRoom.values().stream()
+                .filter(sp -> !Integer.valueOf(sp.getPoints()).equals(syncedPoints.get(sp.getClientId())))
+                .collect(Collectors.toList());
+        if (changed.isEmpty()) {
+            return;
+        }
+        boolean isDelta = !syncedPoints.isEmpty() && changed.size() * 2 < clientsInRoom.size();
+        List<ServerThread> listed = isDelta ? changed : new ArrayList<>(clientsInRoom.values());
+        long[] clientIds = new long[listed.size()];
+        int[] points = new int[listed.size()];
+        for (int i = 0; i < listed.size(); i++) {
+            clientIds[i] = listed.get(i).getClientId();
+            points[i] = listed.get(i).getPoints();
+            syncedPoints.put(clientIds[i], points[i]);
+        }
+        scoreboard.setClientIds(clientIds);
+        scoreboard.setPoints(points);
+        scoreboard.setDelta(isDelta);
+    }
+
+    /**
+     * Sends the round transition as one payload per client; older clients get
+     * the separate events, points, turn reset and timer it replaces
+     * 
+     * @param roundState
+     * @param rules      the round's results (if any) were settled with these
+     */
+    private void sendRoundState(RoundStatePayload roundState, ChoiceRules rules) {
+        roundState.setServerTime(System.currentTimeMillis());
+        SharedPayload shared = new SharedPayload(roundState);
+        List<SharedPayload> legacyPayloads = null;
+        for (ServerThread spInRoom : clientsInRoom.values()) {
+            if (spInRoom.readsRoomSnapshot()) {
+                spInRoom.sendToClient(shared);
+                continue;
+            }
+            if (legacyPayloads == null) {
+                legacyPayloads = createLegacyRoundPayloads(roundState, rules);
+            }
+            legacyPayloads.forEach(spInRoom::sendToClient);
+        }
+    }
+
+    private List<SharedPayload> createLegacyRoundPayloads(RoundStatePayload roundState, ChoiceRules rules) {
+        List<Payload> payloads = new ArrayList<>();
+        for (long clientId : roundState.getNoPick()) {
+            payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL,
+                    getDisplayName(clientId) + " eliminated (did not pick)"));
+        }
+        if (roundState.getChoiceCounts() != null) {
+            payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL,
+                    "Mass match: " + rules.formatTally(roundState.getChoiceCounts())));
+        } else if (roundState.getBattles() != null && !roundState.getBattles().isEmpty()) {
+            StringBuilder battleLog = new StringBuilder("Battle Results:\n");
+            roundState.getBattles().forEach(battle -> battleLog.append(battle.format(
+                    getDisplayName(battle.getAttackerId()), getDisplayName(battle.getDefenderId()))).append("\n"));
+            payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL, battleLog.toString()));
+        }
+        for (int i = 0; i < roundState.getClientIds().length; i++) {
+            payloads.add(ServerThread.createPointsPayload(roundState.getClientIds()[i], roundState.getPoints()[i]));
+        }
+        if (roundState.getChoiceCounts() != null) {
+            payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL,
+                    String.format("%d players have been eliminated!", roundState.getEliminated().length)));
+        } else {
+            for (long clientId : roundState.getEliminated()) {
+                payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL,
+                        getDisplayName(clientId) + " has been eliminated!"));
+            }
+        }
+        if (roundState.getMessage() != null) {
+            payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL, roundState.getMessage()));
+        }
+        if (roundState.getDeadline() > 0) {
+            payloads.add(ServerThread.createResetTurnPayload());
+            payloads.add(ServerThread.createMessagePayload(Constants.GAME_EVENT_CHANNEL,
+                    String.format("Round %d has started", roundState.getRound())));
+            payloads.add(ServerThread.createDeadlinePayload(TimerType.ROUND, roundState.getDeadline()));
+        }
+        return payloads.stream().map(SharedPayload::new).collect(Collectors.toList());
+    }
+
+    private String getDisplayName(long clientId) {
+        ServerThread sp = clientsInRoom.get(clientId);
+        return sp == null ? "#" + clientId : sp.getDisplayName();
     }
 
     private void sendResetTurnStatus() {
+        SharedPayload reset = new SharedPayload(ServerThread.createResetTurnPayload());
         clientsInRoom.values().forEach(spInRoom -> {
-            spInRoom.sendResetTurnStatus();
+            spInRoom.sendToClient(reset);
         });
     }
 
     private void sendTurnStatus(ServerThread client, boolean tookTurn) {
+        SharedPayload turn = new SharedPayload(
+                ServerThread.createTurnPayload(client.getClientId(), client.didTakeTurn(), false));
         clientsInRoom.values().forEach(spInRoom -> {
-            spInRoom.sendTurnStatus(client.getClientId(), client.didTakeTurn());
+            spInRoom.sendToClient(turn);
         });
     }
 
@@ -295,17 +487,14 @@ public class GameRoom extends BaseGameRoom {
         clientsInRoom.values().forEach(sp -> {
             sp.setTookTurn(false);
             sp.setChoice(null);
+            counters.update(sp);
         });
         sendResetTurnStatus();
     }
 
     private void checkAllPicked() {
-        long activeCount = clientsInRoom.values().stream()
-                .filter(sp -> !sp.isEliminated() && !sp.isAway() && !sp.isSpectator())
-                .count();
-        long pickedCount = clientsInRoom.values().stream()
-                .filter(sp -> !sp.isEliminated() && sp.getChoice() != null)
-                .count();
+        long activeCount = counters.getActive();
+        long pickedCount = counters.getPicked();
 
         if (pickedCount >= activeCount && activeCount > 0) {
             sendGameEvent("All active players have picked!");
@@ -321,12 +510,11 @@ public class GameRoom extends BaseGameRoom {
         if (sender.isSpectator()) {
             // Spectators can't be ready or influence start
             sender.setReady(false);
+            counters.update(sender);
             return;
         }
         // Custom check to start early if everyone is ready
-        long numReady = clientsInRoom.values().stream()
-                .filter(p -> p.isReady())
-                .count();
+        long numReady = counters.getReady();
         // Fix: Use total clients in room to determine if "Everyone" is ready.
         // Old logic filtered out spectators (!isReady) causing numReady == numPlayers
         // loop.
@@ -365,56 +553,25 @@ public class GameRoom extends BaseGameRoom {
                 return;
             }
 
-            String c = choice.trim().toLowerCase();
-            // Validate against RPS5
-            boolean isRPS5Allowed = enableRPS5;
-            if (isRPS5Allowed && enableRPS5Final3) {
-                long activeCount = clientsInRoom.values().stream()
-                        .filter(p -> !p.isSpectator() && !p.isAway() && !p.isEliminated())
-                        .count();
-                LoggerUtil.INSTANCE.info(String.format("RPS5 Final 3 Check: Active=%d, Total=%d, Enabled=%s",
-                        activeCount, clientsInRoom.size(), enableRPS5Final3));
-
-                if (activeCount > 3) {
-                    isRPS5Allowed = false;
-                }
+            ChoiceRules rules = roundRules;
+            Choice c = Choice.fromString(choice);
+            if (c == null) {
+                currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID, "Invalid choice. Use r, p, s, l, or sp.");
+                return;
             }
-
-            if (!isRPS5Allowed && (c.equals("l") || c.equals("sp"))) {
+            if (!rules.allows(c)) {
                 String msg = "RPS-5 is disabled.";
                 if (enableRPS5 && enableRPS5Final3) {
                     msg += " (Wait for Final 3)";
+                } else if (enableRPS5) {
+                    msg += " (Enabled from the next round)";
                 }
                 currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID, msg);
                 return;
             }
 
-            // Validate Cooldown
-            if (enableCooldown && currentUser.getLastChoice() != null && currentUser.getLastChoice().equals(c)) {
-                currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID,
-                        String.format("Cooldown enabled. You cannot pick %s again.", c));
-                return;
-            }
-
-            // String c = choice.trim().toLowerCase(); // removed duplicate
-            // Simple mapping/validation
-            if (c.startsWith("r"))
-                c = "r";
-            else if (c.startsWith("p"))
-                c = "p";
-            else if (c.startsWith("s"))
-                c = "s";
-            else if (c.startsWith("l"))
-                c = "l";
-            else if (c.startsWith("sp"))
-                c = "sp";
-            else {
-                currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID, "Invalid choice. Use r, p, s, l, or sp.");
-                return;
-            }
-
             // Cooldown check
-            if (enableCooldown && c.equals(currentUser.getLastChoice())) {
+            if (enableCooldown && c == currentUser.getLastChoice()) {
                 currentUser.sendMessage(Constants.DEFAULT_CLIENT_ID,
                         "Cooldown active: You cannot pick the same option twice in a row!");
                 return;
@@ -422,8 +579,11 @@ public class GameRoom extends BaseGameRoom {
 
             currentUser.setChoice(c);
             currentUser.setTookTurn(true); // Visually marks them as "Done"
+            counters.update(currentUser);
 
-            sendGameEvent(String.format("%s picked their choice", currentUser.getDisplayName()));
+            if (!isMassMatch()) { // the turn status is enough, this would be a line per player
+                sendGameEvent(String.format("%s picked their choice", currentUser.getDisplayName()));
+            }
             sendTurnStatus(currentUser, true); // Sync visual
 
             checkAllPicked();
@@ -446,7 +606,8 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void sendSettings(String key, String value) {
-        clientsInRoom.values().forEach(c -> c.sendToClient(createSettingsPayload(key, value)));
+        SharedPayload settings = new SharedPayload(createSettingsPayload(key, value));
+        clientsInRoom.values().forEach(c -> c.sendToClient(settings));
     }
 
     public void handleSettings(ServerThread sender, String command) {
@@ -480,12 +641,20 @@ public class GameRoom extends BaseGameRoom {
                     sendGameEvent("Cooldown " + (enableCooldown ? "Enabled" : "Disabled"));
                 }
                 break;
+            case "mass":
+                if (parts.length > 1) {
+                    enableMassMatch = "on".equalsIgnoreCase(parts[1]) || "true".equalsIgnoreCase(parts[1]);
+                    sendSettings("mass", enableMassMatch ? "on" : "off");
+                    sendGameEvent("Mass Match " + (enableMassMatch ? "Enabled" : "Disabled"));
+                }
+                break;
             case "away":
                 boolean isAway = !sender.isAway(); // Default toggle
                 if (parts.length > 1) {
                     isAway = "on".equalsIgnoreCase(parts[1]) || "true".equalsIgnoreCase(parts[1]);
                 }
                 sender.setAway(isAway);
+                counters.update(sender);
                 sendGameEvent(sender.getDisplayName() + (isAway ? " is now Away" : " is no longer Away"));
                 // Broadcast update to all clients
                 clientsInRoom.values().forEach(client -> {
@@ -0,0 +1,207 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import Project.Common.FrameCodec;
+import Project.Common.Payload;
+
+/**
+ * Non-blocking state of a single framed client connection owned by a
+ * NioEventLoop.
+ * <p>
+ * Reads and writes only happen on the loop thread. Outgoing frames wait in
+ * the ServerThread's OutboundQueue; any thread may call
+ * {@link #scheduleFlush()} to have the loop write them.
+ * </p>
+ */
+public class NioConnection {
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private ServerThread serverThread;
+    private SelectionKey key;
+    private int wireVersion = 0; // set by the handshake
+    // only allocated while a frame is partially received (idle connections hold
+    // no read buffer)
+    private ByteBuffer pendingRead = null;
+    // frame that only partially fit in the socket buffer
+    private ByteBuffer currentWrite = null;
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean isOpen = new AtomicBoolean(true);
+
+    protected NioConnection(SocketChannel channel, NioEventLoop loop) {
+        this.channel = channel;
+        this.loop = loop;
+    }
+
+    protected SocketChannel getChannel() {
+        return channel;
+    }
+
+    protected void setServerThread(ServerThread serverThread) {
+        this.serverThread = serverThread;
+    }
+
+    protected boolean isOpen() {
+        return isOpen.get();
+    }
+
+    /**
+     * Triggered on the loop thread once the channel is registered with the
+     * Selector
+     *
+     * @param key
+     */
+    protected void onRegistered(SelectionKey key) {
+        this.key = key;
+        if (!isOpen()) {
+            key.cancel();
+            return;
+        }
+        // flush anything that was queued before registration finished
+        flush();
+    }
+
+    /**
+     * Asks the loop to write whatever is in the outbound queue (cheap to call
+     * repeatedly, at most one flush task is pending at a time)
+     */
+    protected void scheduleFlush() {
+        if (isOpen() && isFlushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes queued frames until the queue is empty or the socket buffer is full.
+     * Interest in OP_WRITE is only kept while there's data left over.
+     */
+    private void flush() {
+        isFlushScheduled.set(false);
+        if (key == null || !isOpen()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (currentWrite == null) {
+                    OutboundQueue.Entry next = serverThread.pollOutbound();
+                    if (next == null) {
+                        break;
+                    }
+                    currentWrite = next.getFrame();
+                }
+                channel.write(currentWrite);
+                if (currentWrite.hasRemaining()) {
+                    // socket buffer is full, continue once the channel is writable
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                currentWrite = null;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close(true);
+        }
+    }
+
+    protected void onWritable() {
+        flush();
+    }
+
+    protected void onReadable() throws IOException {
+        ByteBuffer buffer = pendingRead != null ? pendingRead : loop.getReadScratch();
+        int read = channel.read(buffer);
+        if (read < 0) {
+            close(true);
+            return;
+        }
+        buffer.flip();
+        int needed;
+        try {
+            needed = decodeFrames(buffer);
+        } catch (IOException e) {
+            // don't leave garbage in the shared scratch buffer
+            buffer.clear();
+            throw e;
+        }
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            pendingRead = null;
+            return;
+        }
+        // keep the partial frame around until the rest of it arrives
+        int capacity = Math.max(needed, buffer.remaining());
+        if (buffer == pendingRead && pendingRead.capacity() >= capacity) {
+            pendingRead.compact();
+        } else {
+            ByteBuffer next = ByteBuffer.allocate(capacity);
+            next.put(buffer);
+            buffer.clear();
+            pendingRead = next;
+        }
+    }
+
+    /**
+     * Decodes every complete frame in the buffer and passes them along to the
+     * ServerThread
+     *
+     * @param buffer in read mode
+     * @return the total size of the next incomplete frame (including prefix)
+     * @throws StreamCorruptedException if the client doesn't speak the framed
+     *                                  protocol
+     */
+    private int decodeFrames(ByteBuffer buffer) throws IOException {
+        if (wireVersion == 0) {
+            if (buffer.remaining() < FrameCodec.HEADER_LENGTH) {
+                return FrameCodec.HEADER_LENGTH;
+            }
+            wireVersion = FrameCodec.getVersion(buffer.getInt());
+            if (wireVersion <= 0) {
+                throw new StreamCorruptedException("Client didn't send a supported framed handshake");
+            }
+            serverThread.setWireVersion(wireVersion);
+        }
+        while (isOpen() && buffer.remaining() >= FrameCodec.LENGTH_PREFIX) {
+            int length = buffer.getInt(buffer.position());
+            FrameCodec.checkLength(length);
+            int frameSize = FrameCodec.LENGTH_PREFIX + length;
+            if (buffer.remaining() < frameSize) {
+                return frameSize;
+            }
+            int bodyStart = buffer.position() + FrameCodec.LENGTH_PREFIX;
+            Payload payload = FrameCodec.decodeBody(buffer.array(), buffer.arrayOffset() + bodyStart, length,
+                    wireVersion);
+            buffer.position(buffer.position() + frameSize);
+            serverThread.handleIncoming(payload);
+        }
+        return FrameCodec.LENGTH_PREFIX;
+    }
+
+    /**
+     * Closes the channel (safe to call from any thread and more than once)
+     *
+     * @param notify true to let the ServerThread run its disconnect logic
+     */
+    protected void close(boolean notify) {
+        if (!isOpen.compareAndSet(true, false)) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        currentWrite = null;
+        pendingRead = null;
+        if (notify && serverThread != null) {
+            serverThread.onConnectionClosed();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TextFX;
+import Project.Common.TextFX.Color;
+
+/**
+ * A single selector thread that serves the reads and writes of many
+ * NioConnections.
+ * <p>
+ * Work coming from other threads (registrations, flush requests) is handed
+ * over through a task queue and a selector wakeup so the Selector is only ever
+ * touched by its own thread.
+ * </p>
+ */
+public class NioEventLoop implements Runnable {
+    private static final int READ_SCRATCH_SIZE = 64 * 1024;
+    private static final LoggerUtil.ClassLogger LOG = LoggerUtil.forClass(NioEventLoop.class);
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // shared by every connection on this loop; connections only keep their own
+    // buffer while a frame is partially received
+    private final ByteBuffer readScratch = ByteBuffer.allocate(READ_SCRATCH_SIZE);
+    private volatile boolean isRunning = false;
+
+    private void info(String message) {
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info(TextFX.colorize(String.format("%s: %s", thread.getName(), message), Color.CYAN));
+        }
+    }
+
+    protected NioEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+    }
+
+    protected void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * @return true if the caller is running on this loop's thread
+     */
+    protected boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Queues a task to run on the loop thread
+     *
+     * @param task
+     */
+    protected void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Registers the accepted channel for reads on this loop
+     *
+     * @param connection
+     */
+    protected void register(NioConnection connection) {
+        execute(() -> {
+            try {
+                SocketChannel channel = connection.getChannel();
+                channel.configureBlocking(false);
+                connection.onRegistered(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e) {
+                connection.close(true);
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.warning("Failed to register connection", e);
+                connection.close(true);
+            }
+        });
+    }
+
+    protected ByteBuffer getReadScratch() {
+        return readScratch;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.severe("Event loop task failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        info("Event loop starting");
+        while (isRunning) {
+            try {
+                runTasks();
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (IOException e) {
+                        // most likely the client disconnected mid read/write
+                        connection.close(true);
+                    } catch (RuntimeException e) {
+                        // a handler failed on this loop's thread; drop the client, not the loop
+                        LoggerUtil.INSTANCE.severe("Failed handling a client on " + thread.getName(), e);
+                        connection.close(true);
+                    }
+                }
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.severe("Selector failure", e);
+                break;
+            }
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                ((NioConnection) key.attachment()).close(false);
+            }
+            selector.close();
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning("Error closing selector", e);
+        }
+        info("Event loop stopped");
+    }
+
+    protected void shutdown() {
+        isRunning = false;
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,66 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import Project.Common.TimerWheel;
+
+/**
+ * Optional non-blocking transport.
+ * <p>
+ * Instead of one ServerThread (and one thread stack) per client, accepted
+ * channels are spread round-robin over a small fixed pool of NioEventLoops.
+ * Decoded Payloads are handed to the same ServerThread.processPayload()
+ * handlers used by the blocking transport.
+ * </p>
+ */
+public class NioServer {
+    private final NioEventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger(0);
+    private final Consumer<ServerThread> onInitializationComplete;
+
+    /**
+     * @param loopCount                number of event loop threads
+     * @param onInitializationComplete passed to each ServerThread
+     * @throws IOException if a Selector can't be opened
+     */
+    protected NioServer(int loopCount, Consumer<ServerThread> onInitializationComplete) throws IOException {
+        this.onInitializationComplete = onInitializationComplete;
+        loops = new NioEventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new NioEventLoop("nio-loop-" + i);
+        }
+    }
+
+    protected void start() {
+        for (NioEventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    protected int getLoopCount() {
+        return loops.length;
+    }
+
+    /**
+     * Wraps a freshly accepted channel and hands it to the next event loop
+     *
+     * @param channel
+     */
+    protected void accept(SocketChannel channel) {
+        NioEventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        NioConnection connection = new NioConnection(channel, loop);
+        ServerThread serverThread = new ServerThread(connection, onInitializationComplete);
+        loop.register(connection);
+        TimerWheel.INSTANCE.schedule(serverThread::checkNameReceived, 3, TimeUnit.SECONDS);
+    }
+
+    protected void shutdown() {
+        for (NioEventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package Project.Server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import Project.Common.Constants;
+import Project.Common.Payload;
+import Project.Common.TimerPayload;
+
+/**
+ * Per-client queue of payloads waiting to be written, enforcing a
+ * BackpressurePolicy.
+ * <p>
+ * Depth is tracked in payloads and in encoded bytes (legacy object stream
+ * clients aren't encoded ahead of time so only their payload count is
+ * limited).
+ * </p>
+ * <p>
+ * Coalescing: state updates like TIME, POINTS, READY or PHASE only matter in
+ * their latest form, so a newer one for the same key replaces the queued one.
+ * The key is whatever the update overwrites on the client: the timer for
+ * TIME, the client for per-player state, the setting's name for SETTINGS
+ * (each "key value" message is its own setting) and the type alone only for
+ * room-wide state like PHASE and HOST. The replacement goes to the back of
+ * the queue so it still lands after anything (i.e., a RESET_READY) that was
+ * queued in between.
+ * </p>
+ */
+public class OutboundQueue {
+    /**
+     * Outcome of {@link OutboundQueue#offer(Payload, ByteBuffer)}
+     */
+    public enum OfferResult {
+        QUEUED,
+        HIGH_WATER, // queued, and the queue just went above its high-water mark
+        COALESCED, // queued in place of an older update it supersedes
+        DROPPED, // low priority payload dropped since the queue is above its high-water mark
+        OVERFLOW, // hard limit reached, the client isn't keeping up
+    }
+
+    /**
+     * A queued payload and its encoded frame (null for object stream clients)
+     */
+    public static class Entry {
+        private final Payload payload;
+        private final ByteBuffer frame;
+        private final int size;
+        private final String key;
+        private boolean isSuperseded = false;
+
+        private Entry(Payload payload, ByteBuffer frame, String key) {
+            this.payload = payload;
+            this.frame = frame;
+            this.size = frame == null ? 0 : frame.remaining();
+            this.key = key;
+        }
+
+        public Payload getPayload() {
+            return payload;
+        }
+
+        public ByteBuffer getFrame() {
+            return frame;
+        }
+    }
+
+    private final BackpressurePolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final HashMap<String, Entry> latestByKey = new HashMap<>();
+    private int depth = 0; // live entries, superseded ones are skipped when polled
+    private int superseded = 0;
+    private long bytes = 0;
+    private boolean isAboveHighWater = false;
+    // stats
+    private int peakDepth = 0;
+    private long peakBytes = 0;
+    private long droppedCount = 0;
+    private long coalescedCount = 0;
+
+    public OutboundQueue(BackpressurePolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Key of the state a payload overwrites on the client
+     *
+     * @param payload
+     * @return the key or null if the payload can't be coalesced
+     */
+    private static String coalesceKey(Payload payload) {
+        switch (payload.getPayloadType()) {
+            case TIME:
+                return "TIME:" + ((TimerPayload) payload).getTimerType();
+            case POINTS:
+            case READY:
+            case SYNC_READY:
+            case TURN:
+            case SYNC_TURN:
+            case AWAY:
+            case SYNC_AWAY:
+                return payload.getPayloadType() + ":" + payload.getClientId();
+            case SETTINGS: {
+                // "key value", only a newer value of the same setting replaces it
+                String message = payload.getMessage();
+                return message == null ? null : "SETTINGS:" + message.split(" ")[0].toLowerCase();
+            }
+            case PHASE:
+            case HOST:
+                return payload.getPayloadType().name();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Chat can be dropped, game events share MESSAGE but use their own channel
+     *
+     * @param payload
+     * @return true if the payload may be dropped
+     */
+    private static boolean isLowPriority(Payload payload) {
+        switch (payload.getPayloadType()) {
+            case MESSAGE:
+                return payload.getClientId() != Constants.GAME_EVENT_CHANNEL;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isAbove(int depth, long bytes, int payloadLimit, long byteLimit) {
+        return depth > payloadLimit || bytes > byteLimit;
+    }
+
+    /**
+     * Queues a payload unless the policy says otherwise
+     *
+     * @param payload
+     * @param frame   the encoded frame or null for object stream clients
+     * @return what happened to the payload
+     */
+    public OfferResult offer(Payload payload, ByteBuffer frame) {
+        lock.lock();
+        try {
+            if (policy.isDroppingChat() && isAboveHighWater && isLowPriority(payload)) {
+                droppedCount++;
+                return OfferResult.DROPPED;
+            }
+            Entry entry = new Entry(payload, frame, policy.isCoalescing() ? coalesceKey(payload) : null);
+            Entry previous = entry.key == null ? null : latestByKey.get(entry.key);
+            int nextDepth = depth + 1;
+            long nextBytes = bytes + entry.size;
+            if (previous != null) {
+                nextDepth--;
+                nextBytes -= previous.size;
+            }
+            if (isAbove(nextDepth, nextBytes, policy.getMaxPayloads(), policy.getMaxBytes())) {
+                return OfferResult.OVERFLOW;
+            }
+            OfferResult result = OfferResult.QUEUED;
+            if (previous != null) {
+                previous.isSuperseded = true;
+                superseded++;
+                coalescedCount++;
+                result = OfferResult.COALESCED;
+            }
+            if (entry.key != null) {
+                latestByKey.put(entry.key, entry);
+            }
+            entries.add(entry);
+            depth = nextDepth;
+            bytes = nextBytes;
+            peakDepth = Math.max(peakDepth, depth);
+            peakBytes = Math.max(peakBytes, bytes);
+            if (!isAboveHighWater
+                    && isAbove(depth, bytes, policy.getHighWaterPayloads(), policy.getHighWaterBytes())) {
+                isAboveHighWater = true;
+                result = OfferResult.HIGH_WATER;
+            }
+            // drop the skipped entries once they outnumber the live ones
+            if (superseded > depth) {
+                entries.removeIf(e -> e.isSuperseded);
+                superseded = 0;
+            }
+            notEmpty.signal();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // must hold the lock
+    private Entry next() {
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            if (entry.isSuperseded) {
+                superseded--;
+                continue;
+            }
+            if (entry.key != null) {
+                latestByKey.remove(entry.key, entry);
+            }
+            depth--;
+            bytes -= entry.size;
+            if (isAboveHighWater
+                    && !isAbove(depth, bytes, policy.getHighWaterPayloads(), policy.getHighWaterBytes())) {
+                isAboveHighWater = false;
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * @return the next entry or null if nothing is queued
+     */
+    public Entry poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next entry
+     *
+     * @return the next entry
+     * @throws InterruptedException
+     */
+    public Entry take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Entry entry;
+            while ((entry = next()) == null) {
+                notEmpty.await();
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            latestByKey.clear();
+            depth = 0;
+            superseded = 0;
+            bytes = 0;
+            isAboveHighWater = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getDepth() {
+        lock.lock();
+        try {
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("depth %d (%d bytes), peak %d (%d bytes), coalesced %d, dropped %d", depth, bytes,
+                    peakDepth, peakBytes, coalescedCount, droppedCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
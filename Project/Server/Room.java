@@ -1,24 +1,109 @@
 package Project.Server;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 import Project.Common.Constants;
+import Project.Common.LogLimiter;
 import Project.Common.LoggerUtil;
+import Project.Common.MemberInfo;
+import Project.Common.Phase;
 import Project.Common.RoomAction;
+import Project.Common.RoomInfo;
+import Project.Common.RoomMembershipPayload;
+import Project.Common.RoomSnapshotPayload;
 import Project.Common.TextFX;
 import Project.Common.TextFX.Color;
+import Project.Common.TimerWheel;
 import Project.Exceptions.DuplicateRoomException;
 import Project.Exceptions.RoomNotFoundException;
 
+/**
+ * A Room is a single-threaded actor: client payloads, timer expirations and
+ * joins/leaves are all posted to its mailbox through {@link #execute(Runnable)}
+ * and run one at a time, in order, by whichever worker of the room executor
+ * picks it up. Room state is only touched from the mailbox so none of it
+ * needs a lock, and separate rooms run in parallel.
+ * <p>
+ * Note: A Room must be registered with a RoomScheduler (i.e., by
+ * Server.createRoom()) before anything is posted to it.
+ * </p>
+ */
 public class Room implements AutoCloseable {
+    // tasks run per turn on a worker before yielding it to other rooms
+    private static final int MAILBOX_BATCH = 64;
+    private static final LoggerUtil.ClassLogger LOG = LoggerUtil.forClass(Room.class);
+    private static final LogLimiter RELAY_TRACE = LoggerUtil.limiter(Room.class, "relay");
+    // info() formats with the "Room[name]: " prefix, for binary logs (built once per format)
+    private static final ConcurrentHashMap<String, String> PREFIXED = new ConcurrentHashMap<>();
+
     private final String name;// unique name of the Room
     private volatile boolean isRunning = false;
     protected final ConcurrentHashMap<Long, ServerThread> clientsInRoom = new ConcurrentHashMap<Long, ServerThread>();
+    private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mailboxSize = new AtomicInteger(0);
+    // true while a drain is queued or running, so only one worker runs this room
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+    private volatile Executor executor; // set by the RoomScheduler
+    // joins/leaves waiting to be batched into one RoomMembershipPayload per
+    // member, only touched from the mailbox
+    private static final long MEMBERSHIP_WINDOW_MILLIS = 50;
+    private final List<MembershipChange> membershipChanges = new ArrayList<>();
+    // members who joined during the window: index of the first change their
+    // snapshot didn't include
+    private final HashMap<Long, Integer> membershipSeen = new HashMap<>();
+    private TimerWheel.Timeout membershipFlush = null;
+
+    /**
+     * A join, leave or disconnect waiting for the next membership batch
+     */
+    private static class MembershipChange {
+        private final MemberInfo member;
+        private final RoomAction action; // JOIN or LEAVE
+        private final boolean isDisconnect;
+
+        private MembershipChange(MemberInfo member, RoomAction action, boolean isDisconnect) {
+            this.member = member;
+            this.action = action;
+            this.isDisconnect = isDisconnect;
+        }
+    }
 
     public final static String LOBBY = "lobby";
 
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Room[%s]: %s", name, message), Color.PURPLE));
+        if (!LOG.isLoggable(Level.INFO)) {
+            return;
+        }
+        if (LOG.isStructured()) { // the binary log keeps the args, no need to color or format
+            LOG.info("Room[%s]: %s", name, message);
+        } else {
+            LOG.info(TextFX.colorize(String.format("Room[%s]: %s", name, message), Color.PURPLE));
+        }
+    }
+
+    /**
+     * Only formats the message if INFO is enabled and the call site is under
+     * its limit (i.e., for every relayed message)
+     */
+    private void info(LogLimiter site, String format, Object arg1, Object arg2) {
+        if (!LOG.isLoggable(Level.INFO)) {
+            return;
+        }
+        if (LOG.isStructured()) {
+            LOG.log(Level.INFO, site, PREFIXED.computeIfAbsent(format, f -> "Room[%s]: " + f), name, arg1, arg2);
+        } else if (site.tryAcquire()) {
+            info(site.withSuppressed(String.format(format, arg1, arg2)));
+        }
     }
 
     public Room(String name) {
@@ -35,9 +120,117 @@ public class Room implements AutoCloseable {
         return isRunning;
     }
 
+    /**
+     * Posts a task to this room's mailbox (i.e., client payloads, timer
+     * callbacks, joins/leaves); it runs after everything posted before it.
+     * Safe to call from any thread, including from the room's own tasks.
+     * 
+     * @param task
+     */
+    protected void execute(Runnable task) {
+        mailbox.add(task);
+        mailboxSize.incrementAndGet();
+        scheduleDrain();
+    }
+
+    /**
+     * A join posted by Server.joinRoom(); unlike other tasks it isn't simply
+     * skipped if the room closed first (i.e., the leave of its last member was
+     * still queued ahead of it)
+     */
+    private final class Join implements Runnable {
+        private final ServerThread client;
+
+        private Join(ServerThread client) {
+            this.client = client;
+        }
+
+        @Override
+        public void run() {
+            addClient(client);
+        }
+
+        /**
+         * Sends the client to the lobby instead, unless they've already moved
+         * on to another room
+         */
+        private void redirect() {
+            if (client.getCurrentRoom() != Room.this || !client.isRunning()) {
+                return;
+            }
+            info(String.format("closed before %s joined, sending them to the lobby", client.getDisplayName()));
+            try {
+                Server.INSTANCE.joinRoom(Room.LOBBY, client);
+            } catch (RoomNotFoundException e) {
+                LoggerUtil.INSTANCE.severe("Lobby wasn't found", e);
+            }
+        }
+    }
+
+    /**
+     * Posts a client's join to the mailbox; if the room closes before it runs
+     * the client is sent to the lobby rather than left in a closed room
+     * 
+     * @param client
+     */
+    protected void executeJoin(ServerThread client) {
+        execute(new Join(client));
+    }
+
+    /**
+     * @param executor runs the mailbox drains, one at a time
+     */
+    protected void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return number of tasks waiting in the mailbox
+     */
+    protected int getMailboxSize() {
+        return mailboxSize.get();
+    }
+
+    private void scheduleDrain() {
+        if (isScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            for (int i = 0; i < MAILBOX_BATCH && (task = mailbox.poll()) != null; i++) {
+                mailboxSize.decrementAndGet();
+                if (!isRunning) { // block action if Room isn't running
+                    if (task instanceof Join) {
+                        ((Join) task).redirect();
+                    }
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LoggerUtil.INSTANCE.severe(String.format("Room[%s]: task failed", name), e);
+                }
+            }
+        } finally {
+            isScheduled.set(false);
+            // something may have been posted after the last poll()
+            if (!mailbox.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
     protected long hostId = Constants.DEFAULT_CLIENT_ID;
 
-    protected synchronized void addClient(ServerThread client) {
+    /**
+     * Note: Must run from the mailbox, Server.joinRoom() posts it
+     * 
+     * @param client
+     */
+    protected void addClient(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -46,7 +239,6 @@ public class Room implements AutoCloseable {
             return;
         }
         clientsInRoom.put(client.getClientId(), client);
-        client.setCurrentRoom(this);
 
         // Host Assignment Logic
         if (hostId == Constants.DEFAULT_CLIENT_ID) {
@@ -54,18 +246,32 @@ public class Room implements AutoCloseable {
             // info("Assigned host to " + client.getDisplayName());
         }
 
-        client.sendResetUserList();
-        syncExistingClients(client);
+        if (client.readsRoomSnapshot()) {
+            client.sendToClient(createSnapshot());
+        } else {
+            client.sendResetUserList();
+            syncExistingClients(client);
+        }
         // notify clients of someone joining
         joinStatusRelay(client, true);
+        recordMembershipChange(client, RoomAction.JOIN, false);
+        if (client.readsRoomSnapshot()) {
+            membershipSeen.put(client.getClientId(), membershipChanges.size());
+        }
 
         // Sync Host Status
         if (hostId != Constants.DEFAULT_CLIENT_ID) {
             sendHostStatus(hostId);
         }
+        publishInfo();
     }
 
-    protected synchronized void removeClient(ServerThread client) {
+    /**
+     * Note: Must run from the mailbox, Server.joinRoom() posts it
+     * 
+     * @param client
+     */
+    protected void removeClient(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -78,6 +284,8 @@ public class Room implements AutoCloseable {
             // notify clients of someone joining
             joinStatusRelay(removedClient, false);
             clientsInRoom.remove(client.getClientId());
+            membershipSeen.remove(client.getClientId());
+            recordMembershipChange(removedClient, RoomAction.LEAVE, false);
 
             // Host Reassignment Logic
             if (client.getClientId() == hostId) {
@@ -92,14 +300,143 @@ public class Room implements AutoCloseable {
                     sendHostStatus(hostId);
                 }
             }
+            publishInfo();
 
             autoCleanup();
         }
     }
 
+    /**
+     * @return the game phase shown in the room directory or null if the room
+     *         has no game
+     */
+    protected Phase getPhase() {
+        return null;
+    }
+
+    /**
+     * Updates this room's entry in the room directory; call it after anything
+     * listed there (players, host, phase) changes
+     */
+    protected void publishInfo() {
+        ServerThread host = clientsInRoom.get(hostId);
+        Server.INSTANCE.getRoomDirectory().update(new RoomInfo(name, clientsInRoom.size(), getPhase(),
+                host == null ? null : host.getClientName()));
+    }
+
+    /**
+     * Builds the state a joining client needs in one payload; subclasses add
+     * their own state on top
+     *
+     * @return a new snapshot of the members and host
+     */
+    protected RoomSnapshotPayload createSnapshot() {
+        RoomSnapshotPayload snapshot = new RoomSnapshotPayload();
+        snapshot.setMessage(getName());
+        snapshot.setHostId(hostId);
+        List<MemberInfo> members = new ArrayList<>(clientsInRoom.size());
+        clientsInRoom.values().forEach(serverThread -> members.add(toMemberInfo(serverThread)));
+        snapshot.setMembers(members);
+        return snapshot;
+    }
+
+    private static MemberInfo toMemberInfo(ServerThread serverThread) {
+        return new MemberInfo(serverThread.getClientId(), serverThread.getClientName(), serverThread.isReady(),
+                serverThread.isAway(), serverThread.didTakeTurn(), serverThread.getPoints());
+    }
+
+    /**
+     * Queues a join/leave for the next membership batch, starting the window
+     * if this is the first change in it
+     *
+     * @param client
+     * @param action       JOIN or LEAVE
+     * @param isDisconnect true if the client left by disconnecting
+     */
+    private void recordMembershipChange(ServerThread client, RoomAction action, boolean isDisconnect) {
+        membershipChanges.add(new MembershipChange(toMemberInfo(client), action, isDisconnect));
+        if (membershipFlush == null) {
+            membershipFlush = TimerWheel.INSTANCE.schedule(this::flushMembershipChanges, MEMBERSHIP_WINDOW_MILLIS,
+                    TimeUnit.MILLISECONDS, this::execute);
+        }
+    }
+
+    /**
+     * Nets out the changes from the given index on (each member is listed
+     * once, under their last change, and dropped if they weren't a member
+     * before or after)
+     *
+     * @param from index of the first change to include
+     * @return the batch or null if nothing changed on balance
+     */
+    private SharedPayload createMembershipPayload(int from) {
+        LinkedHashMap<Long, MembershipChange> first = new LinkedHashMap<>();
+        LinkedHashMap<Long, MembershipChange> last = new LinkedHashMap<>();
+        for (MembershipChange change : membershipChanges.subList(from, membershipChanges.size())) {
+            first.putIfAbsent(change.member.getClientId(), change);
+            last.put(change.member.getClientId(), change);
+        }
+        RoomMembershipPayload membership = new RoomMembershipPayload();
+        membership.setMessage(getName());
+        membership.setHostId(hostId);
+        last.forEach((clientId, change) -> {
+            boolean wasMember = first.get(clientId).action != RoomAction.JOIN;
+            if (change.action == RoomAction.JOIN) {
+                membership.getJoined().add(change.member);
+            } else if (wasMember) {
+                (change.isDisconnect ? membership.getDisconnected() : membership.getLeft()).add(change.member);
+            }
+        });
+        if (membership.getJoined().isEmpty() && membership.getLeft().isEmpty()
+                && membership.getDisconnected().isEmpty()) {
+            return null;
+        }
+        return new SharedPayload(membership);
+    }
+
+    /**
+     * Sends the window's changes to every member that reads batches, one
+     * payload each (shared by everyone who has seen the same changes)
+     */
+    private void flushMembershipChanges() {
+        membershipFlush = null;
+        if (membershipChanges.isEmpty()) {
+            return;
+        }
+        HashMap<Integer, SharedPayload> batches = new HashMap<>();
+        List<ServerThread> failed = new ArrayList<>();
+        for (ServerThread serverThread : clientsInRoom.values()) {
+            if (!serverThread.readsRoomSnapshot()) {
+                continue; // already got each change as it happened
+            }
+            int from = membershipSeen.getOrDefault(serverThread.getClientId(), 0);
+            if (!batches.containsKey(from)) {
+                batches.put(from, from < membershipChanges.size() ? createMembershipPayload(from) : null);
+            }
+            SharedPayload batch = batches.get(from);
+            if (batch != null && !serverThread.sendToClient(batch)) {
+                failed.add(serverThread);
+            }
+        }
+        membershipChanges.clear();
+        membershipSeen.clear();
+        failed.forEach(serverThread -> {
+            LoggerUtil.INSTANCE.warning(
+                    String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
+            disconnect(serverThread);
+        });
+    }
+
+    /**
+     * Clients that read membership batches get the host with the next one
+     *
+     * @param hostId
+     */
     protected void sendHostStatus(long hostId) {
         clientsInRoom.values().forEach(client -> {
-            client.sendClientInfo(hostId, null, null, RoomAction.HOST);
+            if (!client.readsRoomSnapshot()) {
+                client.sendClientInfo(hostId, null, null, RoomAction.HOST);
+            }
         });
     }
 
@@ -119,6 +456,9 @@ public class Room implements AutoCloseable {
 
     private void joinStatusRelay(ServerThread client, boolean didJoin) {
         clientsInRoom.values().removeIf(serverThread -> {
+            if (serverThread.readsRoomSnapshot()) {
+                return false; // batched by recordMembershipChange()
+            }
             String formattedMessage = String.format("%s %s the room",
 
                     client.getClientId() == serverThread.getClientId() ? "You"
@@ -153,15 +493,14 @@ public class Room implements AutoCloseable {
      * Internally calls processCommand and evaluates as necessary.
      * Note: Clients that fail to receive a message get removed from
      * connectedClients.
-     * Adding the synchronized keyword ensures that only one thread can execute
-     * these methods at a time,
-     * preventing concurrent modification issues and ensuring thread safety
+     * Only the room's mailbox calls this, so no other task can change
+     * the room while it runs
      * 
      * @param message
      * @param sender  ServerThread (client) sending the message or null if it's a
      *                server-generated message
      */
-    protected synchronized void relay(ServerThread sender, String message) {
+    protected void relay(ServerThread sender, String message) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -179,10 +518,13 @@ public class Room implements AutoCloseable {
         // to be sent
         // Note: this uses a lambda expression for each item in the values() collection,
         // it's one way we can safely remove items during iteration
-        info(String.format("sending message to %s recipients: %s", clientsInRoom.size(), formattedMessage));
+        info(RELAY_TRACE, "sending message to %s recipients: %s", clientsInRoom.size(), formattedMessage);
+        // encoded once for every recipient
+        final SharedPayload shared = new SharedPayload(
+                ServerThread.createMessagePayload(senderId, formattedMessage));
 
         clientsInRoom.values().removeIf(serverThread -> {
-            boolean failedToSend = !serverThread.sendMessage(senderId, formattedMessage);
+            boolean failedToSend = !serverThread.sendToClient(shared);
             if (failedToSend) {
                 LoggerUtil.INSTANCE.warning(
                         String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
@@ -194,28 +536,33 @@ public class Room implements AutoCloseable {
 
     /**
      * Takes a ServerThread and removes them from the Server
-     * Adding the synchronized keyword ensures that only one thread can execute
-     * these methods at a time,
-     * preventing concurrent modification issues and ensuring thread safety
+     * Only the room's mailbox calls this, so no other task can change
+     * the room while it runs
      * 
      * @param client
      */
-    protected synchronized void disconnect(ServerThread client) {
+    protected void disconnect(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
         ServerThread disconnectingServerThread = clientsInRoom.remove(client.getClientId());
         if (disconnectingServerThread != null) {
-
+            membershipSeen.remove(disconnectingServerThread.getClientId());
+            recordMembershipChange(disconnectingServerThread, RoomAction.LEAVE, true);
+            final SharedPayload disconnectMessage = new SharedPayload(ServerThread.createMessagePayload(
+                    Constants.DEFAULT_CLIENT_ID, disconnectingServerThread.getDisplayName() + " disconnected"));
             clientsInRoom.values().removeIf(serverThread -> {
                 if (serverThread.getClientId() == disconnectingServerThread.getClientId()) {
                     return true;
                 }
+                if (serverThread.readsRoomSnapshot()) {
+                    return false; // batched by recordMembershipChange()
+                }
                 boolean failedToSend = !serverThread.sendClientInfo(
                         disconnectingServerThread.getClientId(),
                         disconnectingServerThread.getClientName(),
                         getName(),
-                        RoomAction.LEAVE);
+                        RoomAction.LEAVE) || !serverThread.sendToClient(disconnectMessage);
                 if (failedToSend) {
                     LoggerUtil.INSTANCE.warning(
                             String.format("Removing disconnected %s from list", serverThread.getDisplayName()));
@@ -223,13 +570,13 @@ public class Room implements AutoCloseable {
                 }
                 return failedToSend;
             });
-            relay(null, disconnectingServerThread.getDisplayName() + " disconnected");
             disconnectingServerThread.disconnect();
+            publishInfo();
         }
         autoCleanup();
     }
 
-    protected synchronized void disconnectAll() {
+    protected void disconnectAll() {
         info("Disconnect All triggered");
         if (!isRunning) {
             return;
@@ -297,8 +644,14 @@ public class Room implements AutoCloseable {
         }
     }
 
-    protected synchronized void handleDisconnect(BaseServerThread sender) {
-        handleDisconnect((ServerThread) sender);
+    /**
+     * Posts the disconnect for connection threads (i.e., a failed read or
+     * write) that aren't running in the room
+     * 
+     * @param sender
+     */
+    protected void handleDisconnect(BaseServerThread sender) {
+        execute(() -> handleDisconnect((ServerThread) sender));
     }
 
     /**
@@ -306,18 +659,18 @@ public class Room implements AutoCloseable {
      * 
      * @param serverThread
      */
-    protected synchronized void handleDisconnect(ServerThread sender) {
+    protected void handleDisconnect(ServerThread sender) {
         disconnect(sender);
     }
 
-    protected synchronized void handleReverseText(ServerThread sender, String text) {
+    protected void handleReverseText(ServerThread sender, String text) {
         StringBuilder sb = new StringBuilder(text);
         sb.reverse();
         String rev = sb.toString();
         relay(sender, rev);
     }
 
-    protected synchronized void handleMessage(ServerThread sender, String text) {
+    protected void handleMessage(ServerThread sender, String text) {
         relay(sender, text);
     }
     // end handle methods
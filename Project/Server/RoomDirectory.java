@@ -0,0 +1,276 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import Project.Common.LoggerUtil;
+import Project.Common.RoomDirectoryDeltaPayload;
+import Project.Common.RoomInfo;
+import Project.Common.TimerWheel;
+
+/**
+ * Snapshot of every room's listing (name, players, phase, host) for the room
+ * directory.
+ * <p>
+ * Rooms publish a fresh RoomInfo from their own mailbox whenever one of those
+ * changes, so serving a page only reads the snapshot and the name index and
+ * never has to reach into a Room.
+ * </p>
+ * <p>
+ * Clients can also subscribe to a query; changes are collected for
+ * {@link #PUSH_INTERVAL_MILLIS} and pushed as one delta per distinct query
+ * (encoded once for everyone sharing it), so a busy lobby UI stays live
+ * without polling.
+ * </p>
+ */
+public class RoomDirectory {
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final long PUSH_INTERVAL_MILLIS = 250;
+
+    /**
+     * A page of results and where the next one starts
+     */
+    public static class Page {
+        private final List<RoomInfo> rooms;
+        private final String nextCursor;
+
+        private Page(List<RoomInfo> rooms, String nextCursor) {
+            this.rooms = rooms;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<RoomInfo> getRooms() {
+            return rooms;
+        }
+
+        /**
+         * @return the cursor of the next page or null if this is the last one
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Latest change to a room since the last push
+     */
+    private static class Change {
+        private final String name;
+        private final RoomInfo info; // null if the room was removed
+
+        private Change(String name, RoomInfo info) {
+            this.name = name;
+            this.info = info;
+        }
+    }
+
+    private final RoomNameIndex index = new RoomNameIndex();
+    // keyed by lowercase name like the Server's room map
+    private final ConcurrentHashMap<String, RoomInfo> snapshot = new ConcurrentHashMap<>();
+    // subscriber -> lowercase query
+    private final ConcurrentHashMap<BaseServerThread, String> subscribers = new ConcurrentHashMap<>();
+    // changes since the last push keyed by lowercase name, so only the latest
+    // one per room is sent; rooms record them from any shard
+    private final ReentrantLock changesLock = new ReentrantLock();
+    private LinkedHashMap<String, Change> changes = new LinkedHashMap<>();
+    // true while a push is scheduled or running, so only one runs at a time
+    // and deltas reach each subscriber in order
+    private boolean isPushScheduled = false;
+    private final Executor pushExecutor;
+
+    /**
+     * @param pushExecutor runs the pushes to subscribers (off the timer wheel,
+     *                     which only fires them)
+     */
+    public RoomDirectory(Executor pushExecutor) {
+        this.pushExecutor = pushExecutor;
+    }
+
+    /**
+     * Lists a new, empty room
+     *
+     * @param name
+     */
+    public void add(String name) {
+        RoomInfo info = new RoomInfo(name, 0, null, null);
+        snapshot.put(name.toLowerCase(), info);
+        index.add(name);
+        recordChange(name, info);
+    }
+
+    /**
+     * Replaces the room's listing; ignored if the room was already removed
+     *
+     * @param info
+     */
+    public void update(RoomInfo info) {
+        if (snapshot.computeIfPresent(info.getName().toLowerCase(), (name, previous) -> info) != null) {
+            recordChange(info.getName(), info);
+        }
+    }
+
+    public void remove(String name) {
+        index.remove(name);
+        snapshot.remove(name.toLowerCase());
+        recordChange(name, null);
+    }
+
+    /**
+     * Starts (or replaces) a client's subscription to changes of rooms whose
+     * name contains the query
+     *
+     * @param client
+     * @param query  partial room name, empty for every room
+     */
+    public void subscribe(BaseServerThread client, String query) {
+        subscribers.put(client, query.toLowerCase());
+    }
+
+    public void unsubscribe(BaseServerThread client) {
+        subscribers.remove(client);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void recordChange(String name, RoomInfo info) {
+        if (subscribers.isEmpty()) {
+            return; // nobody to push to, pages are served from the snapshot
+        }
+        changesLock.lock();
+        try {
+            changes.put(name.toLowerCase(), new Change(name, info));
+            if (!isPushScheduled) {
+                isPushScheduled = true;
+                schedulePush();
+            }
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    private void schedulePush() {
+        TimerWheel.INSTANCE.schedule(this::push, PUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, pushExecutor);
+    }
+
+    /**
+     * Sends the collected changes to the subscribers (runs on the push
+     * executor)
+     */
+    private void push() {
+        LinkedHashMap<String, Change> pushing;
+        changesLock.lock();
+        try {
+            pushing = changes;
+            changes = new LinkedHashMap<>();
+        } finally {
+            changesLock.unlock();
+        }
+        try {
+            sendChanges(pushing);
+        } finally {
+            changesLock.lock();
+            try {
+                // changes recorded during this push go out with the next one
+                if (changes.isEmpty()) {
+                    isPushScheduled = false;
+                } else {
+                    schedulePush();
+                }
+            } finally {
+                changesLock.unlock();
+            }
+        }
+    }
+
+    private void sendChanges(Map<String, Change> pushing) {
+        // one delta per distinct query
+        Map<String, SharedPayload> deltas = new HashMap<>();
+        subscribers.forEach((client, query) -> {
+            if (!deltas.containsKey(query)) {
+                deltas.put(query, createDelta(pushing, query));
+            }
+            SharedPayload delta = deltas.get(query);
+            if (delta == null) {
+                return; // nothing this subscriber cares about
+            }
+            if (!client.sendToClient(delta)) {
+                LoggerUtil.INSTANCE.info("Dropping room directory subscriber that can't be reached");
+                unsubscribe(client);
+            }
+        });
+    }
+
+    /**
+     * @param pushing
+     * @param query   lowercase query
+     * @return the changes matching the query or null if none do
+     */
+    private static SharedPayload createDelta(Map<String, Change> pushing, String query) {
+        List<RoomInfo> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Change change : pushing.values()) {
+            if (!RoomNameIndex.containsIgnoreCase(change.name, query)) {
+                continue;
+            }
+            if (change.info == null) {
+                removed.add(change.name);
+            } else {
+                updated.add(change.info);
+            }
+        }
+        if (updated.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+        RoomDirectoryDeltaPayload payload = new RoomDirectoryDeltaPayload();
+        payload.setUpdated(updated);
+        payload.setRemoved(removed);
+        return new SharedPayload(payload);
+    }
+
+    /**
+     * @param query partial room name
+     * @param limit max results
+     * @return the first matching names alphabetically
+     */
+    public List<String> searchNames(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /**
+     * Gets a page of rooms whose name contains the query, in name order.
+     * The cursor is the last name of the previous page, so rooms created or
+     * removed in between don't shift the pages.
+     *
+     * @param query  partial room name (empty for every room)
+     * @param cursor nextCursor of the previous page or null for the first page
+     * @param limit  page size, clamped to 1..MAX_PAGE_SIZE (0 for the default)
+     * @return the page
+     */
+    public Page page(String query, String cursor, int limit) {
+        int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        // one extra to know if there's another page
+        List<String> names = index.search(query == null ? "" : query, cursor, pageSize + 1);
+        List<RoomInfo> rooms = new ArrayList<>(Math.min(names.size(), pageSize));
+        for (String name : names) {
+            if (rooms.size() == pageSize) {
+                break;
+            }
+            RoomInfo info = snapshot.get(name.toLowerCase());
+            if (info != null) { // removed since the index lookup
+                rooms.add(info);
+            }
+        }
+        String nextCursor = names.size() > pageSize ? names.get(pageSize - 1) : null;
+        return new Page(rooms, nextCursor);
+    }
+}
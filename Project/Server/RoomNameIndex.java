@@ -0,0 +1,202 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Case-insensitive substring search over room names, used for ROOM_LIST.
+ * <p>
+ * Every name is indexed by the n-grams (2 and 3 character substrings) of its
+ * lowercase form, each mapping to the sorted set of names containing it. A
+ * query only has to check the names under its rarest trigram (or its own
+ * posting if it's 2 characters), in sorted order, and stops at the limit.
+ * Single characters aren't indexed (their postings would hold most of the
+ * rooms); those queries walk the names and stop at the limit instead.
+ * </p>
+ * <p>
+ * Note: Results are sorted the same way the room list always has been
+ * (String order of the room name), before the limit is applied.
+ * </p>
+ */
+public class RoomNameIndex {
+    private static final int MIN_GRAM = 2; // shorter queries walk every name
+    private static final int GRAM = 3; // longest n-gram indexed
+
+    private final TreeSet<String> names = new TreeSet<>();
+    private final HashMap<String, TreeSet<String>> postings = new HashMap<>();
+    // rooms are created/removed from any room's mailbox while others list them
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param lowercase
+     * @param length
+     * @return the distinct substrings of the given length
+     */
+    private static Set<String> gramsOf(String lowercase, int length) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + length <= lowercase.length(); i++) {
+            grams.add(lowercase.substring(i, i + length));
+        }
+        return grams;
+    }
+
+    static boolean containsIgnoreCase(String name, String lowercaseQuery) {
+        int last = name.length() - lowercaseQuery.length();
+        for (int i = 0; i <= last; i++) {
+            if (name.regionMatches(true, i, lowercaseQuery, 0, lowercaseQuery.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param name display name of the room
+     */
+    public void add(String name) {
+        lock.writeLock().lock();
+        try {
+            if (!names.add(name)) {
+                return;
+            }
+            String lowercase = name.toLowerCase();
+            for (int length = MIN_GRAM; length <= GRAM; length++) {
+                for (String gram : gramsOf(lowercase, length)) {
+                    postings.computeIfAbsent(gram, g -> new TreeSet<>()).add(name);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param name display name of the room
+     */
+    public void remove(String name) {
+        lock.writeLock().lock();
+        try {
+            if (!names.remove(name)) {
+                return;
+            }
+            String lowercase = name.toLowerCase();
+            for (int length = MIN_GRAM; length <= GRAM; length++) {
+                for (String gram : gramsOf(lowercase, length)) {
+                    TreeSet<String> posting = postings.get(gram);
+                    if (posting != null) {
+                        posting.remove(name);
+                        if (posting.isEmpty()) {
+                            postings.remove(gram);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the first names (alphabetically) that contain the query, ignoring
+     * case
+     *
+     * @param query partial room name (empty matches everything)
+     * @param limit max results
+     * @return a mutable, sorted list of at most limit names
+     */
+    public List<String> search(String query, int limit) {
+        return search(query, null, limit);
+    }
+
+    /**
+     * Finds the first names (alphabetically) after the given one that contain
+     * the query, ignoring case
+     *
+     * @param query partial room name (empty matches everything)
+     * @param after only names sorted after this one (i.e., the last name of
+     *              the previous page) or null to start from the beginning
+     * @param limit max results
+     * @return a mutable, sorted list of at most limit names
+     */
+    public List<String> search(String query, String after, int limit) {
+        final String lowercaseQuery = query.toLowerCase();
+        List<String> results = new ArrayList<>(Math.min(limit, 16));
+        lock.readLock().lock();
+        try {
+            TreeSet<String> candidates = names;
+            if (lowercaseQuery.length() >= MIN_GRAM) {
+                candidates = null;
+                for (String gram : gramsOf(lowercaseQuery, Math.min(GRAM, lowercaseQuery.length()))) {
+                    TreeSet<String> posting = postings.get(gram);
+                    if (posting == null) {
+                        return results; // no name has this n-gram
+                    }
+                    if (candidates == null || posting.size() < candidates.size()) {
+                        candidates = posting;
+                    }
+                }
+            }
+            for (String name : after == null ? candidates : candidates.tailSet(after, false)) {
+                if (results.size() >= limit) {
+                    break;
+                }
+                if (containsIgnoreCase(name, lowercaseQuery)) {
+                    results.add(name);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This is just for testing/demo; times lookups over 100k random room names
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        RoomNameIndex index = new RoomNameIndex();
+        Random random = new Random(42);
+        String[] words = { "rps", "Lobby", "game", "arena", "Ranked", "casual", "pro", "fun", "night", "room" };
+        for (int i = 0; i < count; i++) {
+            index.add(String.format("%s-%s%d", words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)], random.nextInt(count)));
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.println(String.format("Indexed %d rooms (~%dMB heap)", index.size(),
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024)));
+        String[] queries = { "", "a", "rp", "game", "arena-pro", "ranked-casual12", "night1234", "zzz", "room-room9" };
+        for (String query : queries) {
+            index.search(query, 10); // warm up
+        }
+        int iterations = 1000;
+        for (String query : queries) {
+            long start = System.nanoTime();
+            List<String> results = null;
+            for (int i = 0; i < iterations; i++) {
+                results = index.search(query, 10);
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / iterations;
+            System.out.println(String.format("'%s': %dus %s", query, micros, results));
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.TimerWheel;
+
+/**
+ * Pins every Room to one of N single-threaded shards (one per core by
+ * default) that drains its mailbox.
+ * <p>
+ * A room starts on the shard owning its name on a consistent hash ring. Every
+ * {@link #SAMPLE_SECONDS} the busy time of each shard and room is sampled;
+ * when a shard is hot, rooms are moved off it to the coldest shard until the
+ * load evens out. A room busier than the gap between the two (i.e., a lobby
+ * saturating its shard) can't be helped by moving it, so it stays put and the
+ * others sharing its shard are moved away from it instead.
+ * </p>
+ * <p>
+ * Note: Moving a room is safe at any time, its mailbox is only ever drained
+ * by one shard and the next drain is simply submitted to the new shard.
+ * </p>
+ */
+public class RoomScheduler {
+    public static final int SAMPLE_SECONDS = 5;
+    private static final int VIRTUAL_NODES = 64; // ring points per shard
+    private static final double HOT_UTILIZATION = 0.7;
+    private static final double MIN_IMBALANCE = 0.2;
+
+    /**
+     * A worker thread and the drains queued for it
+     */
+    private class Shard implements Runnable {
+        private final int id;
+        private final LinkedBlockingQueue<Registration> queue = new LinkedBlockingQueue<>();
+        private final AtomicLong busyNanos = new AtomicLong(0);
+        private volatile boolean isBusy = false;
+        // last sample
+        private long lastBusyNanos = 0;
+        private volatile double utilization = 0;
+
+        private Shard(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Registration registration;
+                try {
+                    registration = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                isBusy = true;
+                long start = System.nanoTime();
+                try {
+                    registration.drain.run();
+                } catch (Exception e) {
+                    LoggerUtil.INSTANCE.severe("Room drain failed", e);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    busyNanos.addAndGet(elapsed);
+                    registration.busyNanos.addAndGet(elapsed);
+                    isBusy = false;
+                    pending.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * A room's pinning; it's the Executor the room submits its drains to
+     */
+    private class Registration implements Executor {
+        private final Room room;
+        private volatile Shard shard;
+        private volatile Runnable drain;
+        private final AtomicLong busyNanos = new AtomicLong(0);
+        private long lastBusyNanos = 0;
+        private long load = 0; // busy nanos in the last sample
+
+        private Registration(Room room, Shard shard) {
+            this.room = room;
+            this.shard = shard;
+        }
+
+        /**
+         * Rooms only ever have one drain queued or running
+         */
+        @Override
+        public void execute(Runnable drain) {
+            this.drain = drain;
+            pending.incrementAndGet();
+            shard.queue.add(this);
+        }
+    }
+
+    private final Shard[] shards;
+    private final TreeMap<Integer, Shard> ring = new TreeMap<>();
+    private final ConcurrentHashMap<Room, Registration> registrations = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger(0); // drains queued or running
+    private long lastSampleTime = System.nanoTime();
+
+    /**
+     * @param shardCount number of worker threads
+     */
+    public RoomScheduler(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.put(hash(String.format("shard-%d#%d", i, v)), shards[i]);
+            }
+            Thread worker = new Thread(shards[i], "room-shard-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        TimerWheel.INSTANCE.schedule(this::sample, SAMPLE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reads the <code>rps.rooms.shards</code> system property, defaulting to
+     * the available cores
+     *
+     * @return a new scheduler
+     */
+    public static RoomScheduler fromSystemProperties() {
+        return new RoomScheduler(Integer.getInteger("rps.rooms.shards", Runtime.getRuntime().availableProcessors()));
+    }
+
+    // String.hashCode() clusters for similar names (lobby1, lobby2...), spread
+    // it with the murmur3 finalizer
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private Shard shardFor(String roomName) {
+        Map.Entry<Integer, Shard> owner = ring.ceilingEntry(hash(roomName.toLowerCase()));
+        return owner == null ? ring.firstEntry().getValue() : owner.getValue();
+    }
+
+    /**
+     * Pins the room to its shard and hands it the Executor for its mailbox
+     *
+     * @param room
+     */
+    public void register(Room room) {
+        Registration registration = new Registration(room, shardFor(room.getName()));
+        registrations.put(room, registration);
+        room.setExecutor(registration);
+    }
+
+    /**
+     * Stops tracking the room; anything it still has queued runs on its last
+     * shard
+     *
+     * @param room
+     */
+    public void unregister(Room room) {
+        registrations.remove(room);
+    }
+
+    /**
+     * @param room
+     * @return the shard the room is pinned to or -1 if it isn't registered
+     */
+    public int getShard(Room room) {
+        Registration registration = registrations.get(room);
+        return registration == null ? -1 : registration.shard.id;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Waits for every queued drain to finish (i.e., during shutdown)
+     *
+     * @param timeout
+     * @param unit
+     * @return true if the shards went idle in time
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Measures the last period's load and rebalances if needed; runs on the
+     * timer wheel so it never competes with the shards
+     */
+    private void sample() {
+        try {
+            long now = System.nanoTime();
+            long window = Math.max(1, now - lastSampleTime);
+            lastSampleTime = now;
+            long[] shardLoad = new long[shards.length];
+            for (Shard shard : shards) {
+                long busy = shard.busyNanos.get();
+                shardLoad[shard.id] = busy - shard.lastBusyNanos;
+                shard.lastBusyNanos = busy;
+                shard.utilization = Math.min(1, shardLoad[shard.id] / (double) window);
+            }
+            for (Registration registration : registrations.values()) {
+                long busy = registration.busyNanos.get();
+                registration.load = busy - registration.lastBusyNanos;
+                registration.lastBusyNanos = busy;
+            }
+            boolean isHot = false;
+            for (Shard shard : shards) {
+                isHot |= shard.utilization >= HOT_UTILIZATION;
+            }
+            if (isHot) {
+                LoggerUtil.INSTANCE.info(String.format("Room shards:%n%s", this));
+            }
+            rebalance(shardLoad, window);
+        } catch (Exception e) {
+            LoggerUtil.INSTANCE.severe("Room scheduler sample failed", e);
+        } finally {
+            TimerWheel.INSTANCE.schedule(this::sample, SAMPLE_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Moves rooms from the hottest shard to the coldest one, picking the room
+     * whose load is closest to half the gap so each move narrows it
+     *
+     * @param shardLoad busy nanos per shard in the last period (updated with
+     *                  the projected load as rooms move)
+     * @param window    length of the period in nanos
+     */
+    private void rebalance(long[] shardLoad, long window) {
+        for (int moves = 0; moves < shards.length; moves++) {
+            int hot = 0;
+            int cold = 0;
+            for (int i = 1; i < shardLoad.length; i++) {
+                if (shardLoad[i] > shardLoad[hot]) {
+                    hot = i;
+                }
+                if (shardLoad[i] < shardLoad[cold]) {
+                    cold = i;
+                }
+            }
+            long gap = shardLoad[hot] - shardLoad[cold];
+            if (shardLoad[hot] < HOT_UTILIZATION * window || gap < MIN_IMBALANCE * window) {
+                return;
+            }
+            Registration candidate = null;
+            for (Registration registration : registrations.values()) {
+                if (registration.shard != shards[hot] || registration.load <= 0 || registration.load >= gap) {
+                    continue; // moving it wouldn't narrow the gap
+                }
+                if (candidate == null
+                        || Math.abs(registration.load - gap / 2) < Math.abs(candidate.load - gap / 2)) {
+                    candidate = registration;
+                }
+            }
+            if (candidate == null) {
+                LoggerUtil.INSTANCE.warning(String.format("Room shard %d is hot (%.0f%%) but no room can be moved",
+                        hot, shards[hot].utilization * 100));
+                return;
+            }
+            candidate.shard = shards[cold];
+            shardLoad[hot] -= candidate.load;
+            shardLoad[cold] += candidate.load;
+            LoggerUtil.INSTANCE.info(String.format("Moved room %s from shard %d to shard %d",
+                    candidate.room.getName(), hot, cold));
+        }
+    }
+
+    /**
+     * @return one line per shard with its rooms, queue depth and utilization
+     */
+    public List<String> getShardStats() {
+        int[] rooms = new int[shards.length];
+        int[] mailboxes = new int[shards.length];
+        for (Registration registration : registrations.values()) {
+            int id = registration.shard.id;
+            rooms[id]++;
+            mailboxes[id] += registration.room.getMailboxSize();
+        }
+        List<String> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            stats.add(String.format("shard %d: %d rooms, %d drains queued, %d tasks in mailboxes, %.0f%% busy%s",
+                    shard.id, rooms[shard.id], shard.queue.size(), mailboxes[shard.id], shard.utilization * 100,
+                    shard.isBusy ? " (running)" : ""));
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", getShardStats());
+    }
+
+    /**
+     * This is just for testing/demo; one busy room shares a shard with a few
+     * quieter ones until the shards even out
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("scheduler.log");
+        config.setConsoleLogLevel(Level.WARNING);
+        LoggerUtil.INSTANCE.setConfig(config);
+        RoomScheduler scheduler = new RoomScheduler(2);
+        List<Room> rooms = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Room room = new Room("room" + i);
+            scheduler.register(room);
+            rooms.add(room);
+        }
+        Room busy = rooms.get(0);
+        List<Room> neighbors = new ArrayList<>();
+        for (Room room : rooms) {
+            if (room != busy && scheduler.getShard(room) == scheduler.getShard(busy)) {
+                neighbors.add(room);
+            }
+        }
+        System.out.println(String.format("%s shares shard %d with %d rooms", busy.getName(),
+                scheduler.getShard(busy), neighbors.size()));
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SAMPLE_SECONDS * 2 + 1);
+        while (System.nanoTime() < end) {
+            busy.execute(() -> spin(TimeUnit.MILLISECONDS.toNanos(6)));
+            neighbors.forEach(room -> room.execute(() -> spin(TimeUnit.MILLISECONDS.toNanos(1))));
+            Thread.sleep(10);
+        }
+        System.out.println(scheduler);
+        for (Room room : rooms) {
+            System.out.println(String.format("%s is on shard %d", room.getName(), scheduler.getShard(room)));
+        }
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
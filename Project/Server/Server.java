@@ -1,12 +1,20 @@
 package Project.Server;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 
+import Project.Common.LogRingBuffer;
 import Project.Common.LoggerUtil;
 
 import Project.Common.TextFX.Color;
@@ -23,19 +31,50 @@ public enum Server {
         config.setFileSizeLimit(2048 * 1024); // 2MB
         config.setFileCount(1);
         config.setLogLocation("server.log");
+        // i.e., -Drps.log.async=true -Drps.log.overflow=SAMPLE
+        config.setAsync(Boolean.getBoolean("rps.log.async"));
+        config.setAsyncBufferSize(Integer.getInteger("rps.log.bufferSize", config.getAsyncBufferSize()));
+        config.setOverflowPolicy(LogRingBuffer.OverflowPolicy
+                .valueOf(System.getProperty("rps.log.overflow", config.getOverflowPolicy().name()).toUpperCase()));
+        config.setSampleRate(Integer.getInteger("rps.log.sampleRate", config.getSampleRate()));
+        config.setResolvingCaller(Boolean.parseBoolean(System.getProperty("rps.log.resolveCaller", "true")));
+        // i.e., -Drps.log.binary=true writes server-0.rlog (read it with Project.Common.BinaryLogDecoder)
+        // and only shows warnings on the console unless -Drps.log.consoleLevel says otherwise
+        config.setBinary(Boolean.getBoolean("rps.log.binary"));
+        config.setConsoleLogLevel(Level.parse(System.getProperty("rps.log.consoleLevel",
+                config.isBinary() ? "WARNING" : config.getConsoleLogLevel().getName())));
+        // per-payload traces stay on but are capped, i.e.,
+        // -Drps.log.limits="Project.Server=off" or "Project.Server.BaseServerThread#sending=1/100"
+        config.setLimits(System.getProperty("rps.log.limits",
+                "Project.Server.BaseServerThread=200/s;Project.Server.Room#relay=200/s"));
         // Set the logger configuration
         LoggerUtil.INSTANCE.setConfig(config);
     }
+    private static final LoggerUtil.ClassLogger LOG = LoggerUtil.forClass(Server.class);
     private int port = 3000;
     // connected clients
     // Use ConcurrentHashMap for thread-safe client management
     // The key is the unique Room name and the Room is the instance
     private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    // kept in step with rooms for ROOM_LIST/ROOM_DIRECTORY lookups
+    // pushes to directory subscribers run on their own (virtual) thread, not
+    // the timer wheel's
+    private final RoomDirectory roomDirectory = new RoomDirectory(
+            push -> Thread.ofVirtual().name("room-directory-push").start(push));
     private boolean isRunning = true;
-    private long nextClientId = 0;
+    // AtomicLong since clients may finish their handshake on several threads at
+    // once (i.e., multiple NioEventLoops)
+    private final AtomicLong nextClientId = new AtomicLong(0);
+    private NioServer nioServer = null;
+    private final ReentrantLock relayLock = new ReentrantLock();
+    // pins each Room's mailbox to a worker; room tasks never block (sends only
+    // enqueue) so one worker per core is enough
+    private final RoomScheduler roomScheduler = RoomScheduler.fromSystemProperties();
+    // limits for each client's outbound queue
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.fromSystemProperties();
 
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(TextFX.colorize(String.format("Server: %s", message), Color.YELLOW));
+        LOG.info(TextFX.colorize(String.format("Server: %s", message), Color.YELLOW));
     }
 
     private Server() {
@@ -54,21 +93,75 @@ public enum Server {
             // ConcurrentModificationException
             // since empty rooms tell the server to remove themselves
             rooms.values().removeIf(room -> {
-                room.disconnectAll();
+                room.execute(room::disconnectAll);
                 return true;
             });
+            // give the mailboxes a moment to send out the disconnects
+            roomScheduler.awaitIdle(5, TimeUnit.SECONDS);
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if (nioServer != null) {
+            nioServer.shutdown();
+        }
+        LoggerUtil.INSTANCE.flush(2, TimeUnit.SECONDS);
+    }
+
+    public RoomDirectory getRoomDirectory() {
+        return roomDirectory;
+    }
+
+    public RoomScheduler getRoomScheduler() {
+        return roomScheduler;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
     }
 
-    private void start(int port) {
+    /**
+     * Replaces the policy used for clients connecting from now on
+     * 
+     * @param backpressurePolicy
+     */
+    public void setBackpressurePolicy(BackpressurePolicy backpressurePolicy) {
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    /**
+     * Creates the lobby and runs the accept loop of the given transport (blocks
+     * until the server stops)
+     * 
+     * @param port
+     * @param transportMode
+     */
+    protected void start(int port, TransportMode transportMode) {
         this.port = port;
         // server listening
-        info("Listening on port " + this.port);
+        info(String.format("Listening on port %s (%s transport)", this.port, transportMode));
+        info(String.format("Outbound queue policy: %s", backpressurePolicy));
+        info(String.format("Rooms run on %d shards", roomScheduler.getShardCount()));
+        try {
+            createRoom(Room.LOBBY);// create the first room (lobby)
+        } catch (DuplicateRoomException e) {
+            LoggerUtil.INSTANCE.severe(TextFX.colorize("Lobby already exists (this shouldn't happen)", Color.RED));
+        }
+        if (transportMode == TransportMode.NIO) {
+            startNio();
+        } else {
+            startBlocking(transportMode == TransportMode.VIRTUAL ? Thread.ofVirtual().factory()
+                    : Thread.ofPlatform().factory());
+        }
+    }
+
+    /**
+     * Accept loop for the thread-per-client models
+     * 
+     * @param threadFactory creates the reader/writer threads of each ServerThread
+     */
+    private void startBlocking(ThreadFactory threadFactory) {
         // Simplified client connection loop
         try (ServerSocket serverSocket = new ServerSocket(port)) {
-            createRoom(Room.LOBBY);// create the first room (lobby)
             while (isRunning) {
                 info("Waiting for next client");
                 Socket incomingClient = serverSocket.accept(); // blocking action, waits for a client connection
@@ -78,11 +171,9 @@ public enum Server {
                 ServerThread serverThread = new ServerThread(incomingClient, this::onServerThreadInitialized);
                 // start the thread (typically an external entity manages the lifecycle and we
                 // don't have the thread start itself)
-                serverThread.start();
+                serverThread.start(threadFactory);
                 // Note: We don't yet add the ServerThread reference to our connectedClients map
             }
-        } catch (DuplicateRoomException e) {
-            LoggerUtil.INSTANCE.severe(TextFX.colorize("Lobby already exists (this shouldn't happen)", Color.RED));
         } catch (IOException e) {
             LoggerUtil.INSTANCE.severe(TextFX.colorize("Error accepting connection", Color.RED), e);
         } finally {
@@ -90,6 +181,28 @@ public enum Server {
         }
     }
 
+    /**
+     * Accept loop for the non-blocking transport; accepted channels are handed to
+     * a fixed pool of event loops sized to the available cores
+     */
+    private void startNio() {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            nioServer = new NioServer(Runtime.getRuntime().availableProcessors(), this::onServerThreadInitialized);
+            nioServer.start();
+            info(String.format("Started %s event loops", nioServer.getLoopCount()));
+            while (isRunning) {
+                SocketChannel incomingClient = serverChannel.accept(); // blocking action
+                info("Client connected");
+                nioServer.accept(incomingClient);
+            }
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe(TextFX.colorize("Error accepting connection", Color.RED), e);
+        } finally {
+            info("Closing server channel");
+        }
+    }
+
     /**
      * Callback passed to ServerThread to inform Server they're ready to receive
      * data
@@ -98,8 +211,7 @@ public enum Server {
      */
     private void onServerThreadInitialized(ServerThread serverThread) {
         // Generate Server controlled clientId
-        nextClientId = Math.max(++nextClientId, 1);
-        serverThread.setClientId(nextClientId);
+        serverThread.setClientId(nextClientId.incrementAndGet());
         serverThread.sendClientId();// syncs the data to the Client
         // add initialized client to the lobby
         info(String.format("*%s initialized*", serverThread.getDisplayName()));
@@ -121,16 +233,27 @@ public enum Server {
      */
     protected void createRoom(String name) throws DuplicateRoomException {
         final String nameCheck = name.toLowerCase();
-        if (rooms.containsKey(nameCheck)) {
+        final Room[] created = new Room[1];
+        // only the winner of a concurrent create is built and registered; it's
+        // registered before it's in the map so joinRoom() never sees a room
+        // without an executor
+        rooms.computeIfAbsent(nameCheck, key -> {
+            Room room = Room.LOBBY.equals(key) ? new Room(name) : new GameRoom(name);
+            roomScheduler.register(room);
+            created[0] = room;
+            return room;
+        });
+        if (created[0] == null) {
             throw new DuplicateRoomException(String.format("Room %s already exists", name));
         }
-        Room room = Room.LOBBY.equalsIgnoreCase(nameCheck) ? new Room(name) : new GameRoom(name);
-        rooms.put(nameCheck, room);
+        roomDirectory.add(created[0].getName());
         info(String.format("Created new Room %s", name));
     }
 
     /**
-     * Attempts to move a client (ServerThread) between rooms
+     * Attempts to move a client (ServerThread) between rooms.
+     * The leave and join are posted to each room's mailbox; the client's next
+     * payloads already go to the new room and queue up behind the join.
      * 
      * @param name   the target room to join
      * @param client the client moving
@@ -143,32 +266,30 @@ public enum Server {
             throw new RoomNotFoundException(String.format("Room %s wasn't found", name));
         }
         Room currentRoom = client.getCurrentRoom();
+        Room next = rooms.get(nameCheck);
         if (currentRoom != null) {
             info("Removing client from previous Room " + currentRoom.getName());
-            currentRoom.removeClient(client);
+            currentRoom.execute(() -> currentRoom.removeClient(client));
         }
-        Room next = rooms.get(nameCheck);
-        next.addClient(client);
+        next.executeJoin(client); // goes to the lobby if next closes first
+        client.setCurrentRoom(next);
     }
 
     /**
-     * Lists all rooms that partially match the given String
+     * Lists the first 10 rooms (alphabetically) that partially match the given
+     * String
      * 
      * @param roomQuery
      * @return
      */
     protected List<String> listRooms(String roomQuery) {
-        final String nameCheck = roomQuery.toLowerCase();
-        return rooms.values().stream()
-                .filter(room -> room.getName().toLowerCase().contains(nameCheck))// find partially matched rooms
-                .map(room -> room.getName())// map room to String (name)
-                .limit(10) // limit to 10 results
-                .sorted() // sort the results alphabetically
-                .collect(Collectors.toList()); // return a mutable list
+        return roomDirectory.searchNames(roomQuery, 10);
     }
 
     protected void removeRoom(Room room) {
         rooms.remove(room.getName().toLowerCase());
+        roomDirectory.remove(room.getName());
+        roomScheduler.unregister(room);
         info(String.format("Removed room %s", room.getName()));
     }
 
@@ -178,7 +299,7 @@ public enum Server {
      * Note: Not a common use-case; just updated for example sake.
      * </p>
      * Relays the message from the sender to all rooms
-     * Adding the synchronized keyword ensures that only one thread can execute
+     * Holding the relay lock ensures that only one thread can execute
      * these methods at a time,
      * preventing concurrent modification issues and ensuring thread safety
      * 
@@ -186,20 +307,25 @@ public enum Server {
      * @param sender  ServerThread (client) sending the message or null if it's a
      *                server-generated message
      */
-    private synchronized void relayToAllRooms(ServerThread sender, String message) {
-        // Note: any desired changes to the message must be done before this line
-        String senderString = sender == null ? "Server" : sender.getDisplayName();
-        // Note: formattedMessage must be final (or effectively final) since outside
-        // scope can't changed inside a callback function (see removeIf() below)
-        final String formattedMessage = String.format("%s: %s", senderString, message);
-        // end temp identifier
-
-        // loop over Rooms and send out the message
-        // Note: this uses a lambda expression for each item in the values() collection
-
-        rooms.values().forEach(room -> {
-            room.relay(sender, formattedMessage);
-        });
+    private void relayToAllRooms(ServerThread sender, String message) {
+        relayLock.lock();
+        try {
+            // Note: any desired changes to the message must be done before this line
+            String senderString = sender == null ? "Server" : sender.getDisplayName();
+            // Note: formattedMessage must be final (or effectively final) since outside
+            // scope can't changed inside a callback function (see removeIf() below)
+            final String formattedMessage = String.format("%s: %s", senderString, message);
+            // end temp identifier
+
+            // loop over Rooms and send out the message
+            // Note: this uses a lambda expression for each item in the values() collection
+
+            rooms.values().forEach(room -> {
+                room.execute(() -> room.relay(sender, formattedMessage));
+            });
+        } finally {
+            relayLock.unlock();
+        }
     }
 
     /**
@@ -209,21 +335,32 @@ public enum Server {
      * @param sender
      * @param message
      */
-    public synchronized void broadcastMessageToAllRooms(ServerThread sender, String message) {
-        relayToAllRooms(sender, message);
+    public void broadcastMessageToAllRooms(ServerThread sender, String message) {
+        relayLock.lock();
+        try {
+            relayToAllRooms(sender, message);
+        } finally {
+            relayLock.unlock();
+        }
     }
 
     public static void main(String[] args) {
         LoggerUtil.INSTANCE.info("Server Starting");
         Server server = Server.INSTANCE;
         int port = 3000;
+        TransportMode transportMode = TransportMode.THREAD;
         try {
             port = Integer.parseInt(args[0]);
         } catch (Exception e) {
             // can ignore, will either be index out of bounds or type mismatch
             // will default to the defined value prior to the try/catch
         }
-        server.start(port);
+        try {
+            transportMode = TransportMode.valueOf(args[1].toUpperCase());
+        } catch (Exception e) {
+            // same as above, defaults to the thread-per-client transport
+        }
+        server.start(port, transportMode);
         LoggerUtil.INSTANCE.warning("Server Stopped");
     }
 
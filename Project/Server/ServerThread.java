@@ -3,12 +3,16 @@ package Project.Server;
 import java.net.Socket;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.logging.Level;
 import Project.Common.TextFX.Color;
 import Project.Common.TimerPayload;
 import Project.Common.TimerType;
+import Project.Common.Choice;
 import Project.Common.ConnectionPayload;
 import Project.Common.Constants;
+import Project.Common.LogLimiter;
 import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 import Project.Common.PayloadType;
@@ -16,6 +20,7 @@ import Project.Common.Phase;
 import Project.Common.PointsPayload;
 import Project.Common.ReadyPayload;
 import Project.Common.RoomAction;
+import Project.Common.RoomDirectoryPayload;
 import Project.Common.RoomResultPayload;
 import Project.Common.TextFX;
 
@@ -23,6 +28,9 @@ import Project.Common.TextFX;
  * A server-side representation of a single client
  */
 public class ServerThread extends BaseServerThread {
+    private static final LoggerUtil.ClassLogger LOG = LoggerUtil.forClass(ServerThread.class);
+    // info() formats with the "Thread[id]: " prefix, for binary logs (built once per format)
+    private static final ConcurrentHashMap<String, String> PREFIXED = new ConcurrentHashMap<>();
     private Consumer<ServerThread> onInitializationComplete; // callback to inform when this object is ready
 
     /**
@@ -33,8 +41,42 @@ public class ServerThread extends BaseServerThread {
      */
     @Override
     protected void info(String message) {
-        LoggerUtil.INSTANCE
-                .info(TextFX.colorize(String.format("Thread[%s]: %s", this.getClientId(), message), Color.CYAN));
+        if (!LOG.isLoggable(Level.INFO)) {
+            return;
+        }
+        if (LOG.isStructured()) { // the binary log keeps the args, no need to color or format
+            LOG.info("Thread[%s]: %s", this.getClientId(), message);
+        } else {
+            LOG.info(TextFX.colorize(String.format("Thread[%s]: %s", this.getClientId(), message), Color.CYAN));
+        }
+    }
+
+    @Override
+    protected void info(String format, Object arg) {
+        if (!LOG.isLoggable(Level.INFO)) {
+            return;
+        }
+        if (LOG.isStructured()) {
+            LOG.info(prefixed(format), this.getClientId(), arg);
+        } else {
+            info(String.format(format, arg));
+        }
+    }
+
+    @Override
+    protected void info(LogLimiter site, String format, Object arg) {
+        if (!LOG.isLoggable(Level.INFO)) {
+            return;
+        }
+        if (LOG.isStructured()) {
+            LOG.info(site, prefixed(format), this.getClientId(), arg);
+        } else if (site.tryAcquire()) {
+            info(site.withSuppressed(String.format(format, arg)));
+        }
+    }
+
+    private static String prefixed(String format) {
+        return PREFIXED.computeIfAbsent(format, f -> "Thread[%s]: " + f);
     }
 
     /**
@@ -57,6 +99,120 @@ public class ServerThread extends BaseServerThread {
 
     }
 
+    /**
+     * Wraps a non-blocking connection owned by an NioEventLoop. No reader thread
+     * is started; the event loop feeds processPayload() instead.
+     * 
+     * @param connection
+     * @param onInitializationComplete method to inform listener that this object is
+     *                                 ready
+     */
+    protected ServerThread(NioConnection connection, Consumer<ServerThread> onInitializationComplete) {
+        Objects.requireNonNull(connection, "Client connection cannot be null");
+        Objects.requireNonNull(onInitializationComplete, "callback cannot be null");
+        info("ServerThread created (nio)");
+        this.connection = connection;
+        this.onInitializationComplete = onInitializationComplete;
+        connection.setServerThread(this);
+        isRunning = true;
+    }
+
+    /**
+     * A client with no connection (i.e., to drive a room from a test harness
+     * without a Server). It never starts running, so anything sent to it is
+     * dropped.
+     * 
+     * @param policy limits for the outbound queue
+     */
+    protected ServerThread(BackpressurePolicy policy) {
+        super(policy);
+        info("ServerThread created (detached)");
+        this.onInitializationComplete = serverThread -> {
+        };
+    }
+
+    // Start create*Payload() methods
+    // Note: Rooms use these with a SharedPayload when sending the same data to
+    // every client so it's only encoded once
+    protected static Payload createPointsPayload(long clientId, int points) {
+        PointsPayload rp = new PointsPayload();
+        rp.setPoints(points);
+        rp.setClientId(clientId);
+        return rp;
+    }
+
+    protected static Payload createTimePayload(TimerType timerType, int time) {
+        TimerPayload tp = new TimerPayload();
+        tp.setTime(time);
+        tp.setTimerType(timerType);
+        return tp;
+    }
+
+    /**
+     * One payload per timer start, the client counts down locally
+     * 
+     * @param timerType
+     * @param deadline  server epoch millis when the timer runs out
+     */
+    protected static Payload createDeadlinePayload(TimerType timerType, long deadline) {
+        TimerPayload tp = new TimerPayload();
+        long now = System.currentTimeMillis();
+        // seconds left for clients that only read the time field
+        tp.setTime((int) Math.max(0, (deadline - now + 999) / 1000));
+        tp.setTimerType(timerType);
+        tp.setDeadline(deadline);
+        tp.setServerTime(now);
+        return tp;
+    }
+
+    protected static Payload createResetTurnPayload() {
+        ReadyPayload rp = new ReadyPayload();
+        rp.setPayloadType(PayloadType.RESET_TURN);
+        return rp;
+    }
+
+    protected static Payload createTurnPayload(long clientId, boolean didTakeTurn, boolean quiet) {
+        // NOTE for now using ReadyPayload as it has the necessary properties
+        // An actual turn may include other data for your project
+        ReadyPayload rp = new ReadyPayload();
+        rp.setPayloadType(quiet ? PayloadType.SYNC_TURN : PayloadType.TURN);
+        rp.setClientId(clientId);
+        rp.setReady(didTakeTurn);
+        return rp;
+    }
+
+    protected static Payload createPhasePayload(Phase phase) {
+        Payload p = new Payload();
+        p.setPayloadType(PayloadType.PHASE);
+        p.setMessage(phase.name());
+        return p;
+    }
+
+    protected static Payload createResetReadyPayload() {
+        ReadyPayload rp = new ReadyPayload();
+        rp.setPayloadType(PayloadType.RESET_READY);
+        return rp;
+    }
+
+    protected static Payload createReadyPayload(long clientId, boolean isReady, boolean quiet) {
+        ReadyPayload rp = new ReadyPayload();
+        rp.setClientId(clientId);
+        rp.setReady(isReady);
+        if (quiet) {
+            rp.setPayloadType(PayloadType.SYNC_READY);
+        }
+        return rp;
+    }
+
+    protected static Payload createMessagePayload(long clientId, String message) {
+        Payload payload = new Payload();
+        payload.setPayloadType(PayloadType.MESSAGE);
+        payload.setMessage(message);
+        payload.setClientId(clientId);
+        return payload;
+    }
+    // End create*Payload() methods
+
     // Start Send*() Methods
     /**
      * Syncs a specific client's points
@@ -66,10 +222,7 @@ public class ServerThread extends BaseServerThread {
      * @return
      */
     public boolean sendPlayerPoints(long clientId, int points) {
-        PointsPayload rp = new PointsPayload();
-        rp.setPoints(points);
-        rp.setClientId(clientId);
-        return sendToClient(rp);
+        return sendToClient(createPointsPayload(clientId, points));
     }
 
     public boolean sendGameEvent(String str) {
@@ -84,16 +237,11 @@ public class ServerThread extends BaseServerThread {
      * @return
      */
     public boolean sendCurrentTime(TimerType timerType, int time) {
-        TimerPayload tp = new TimerPayload();
-        tp.setTime(time);
-        tp.setTimerType(timerType);
-        return sendToClient(tp);
+        return sendToClient(createTimePayload(timerType, time));
     }
 
     public boolean sendResetTurnStatus() {
-        ReadyPayload rp = new ReadyPayload();
-        rp.setPayloadType(PayloadType.RESET_TURN);
-        return sendToClient(rp);
+        return sendToClient(createResetTurnPayload());
     }
 
     public boolean sendTurnStatus(long clientId, boolean didTakeTurn) {
@@ -101,26 +249,15 @@ public class ServerThread extends BaseServerThread {
     }
 
     public boolean sendTurnStatus(long clientId, boolean didTakeTurn, boolean quiet) {
-        // NOTE for now using ReadyPayload as it has the necessary properties
-        // An actual turn may include other data for your project
-        ReadyPayload rp = new ReadyPayload();
-        rp.setPayloadType(quiet ? PayloadType.SYNC_TURN : PayloadType.TURN);
-        rp.setClientId(clientId);
-        rp.setReady(didTakeTurn);
-        return sendToClient(rp);
+        return sendToClient(createTurnPayload(clientId, didTakeTurn, quiet));
     }
 
     public boolean sendCurrentPhase(Phase phase) {
-        Payload p = new Payload();
-        p.setPayloadType(PayloadType.PHASE);
-        p.setMessage(phase.name());
-        return sendToClient(p);
+        return sendToClient(createPhasePayload(phase));
     }
 
     public boolean sendResetReady() {
-        ReadyPayload rp = new ReadyPayload();
-        rp.setPayloadType(PayloadType.RESET_READY);
-        return sendToClient(rp);
+        return sendToClient(createResetReadyPayload());
     }
 
     public boolean sendReadyStatus(long clientId, boolean isReady) {
@@ -136,13 +273,7 @@ public class ServerThread extends BaseServerThread {
      * @return
      */
     public boolean sendReadyStatus(long clientId, boolean isReady, boolean quiet) {
-        ReadyPayload rp = new ReadyPayload();
-        rp.setClientId(clientId);
-        rp.setReady(isReady);
-        if (quiet) {
-            rp.setPayloadType(PayloadType.SYNC_READY);
-        }
-        return sendToClient(rp);
+        return sendToClient(createReadyPayload(clientId, isReady, quiet));
     }
 
     public boolean sendRooms(List<String> rooms) {
@@ -151,6 +282,22 @@ public class ServerThread extends BaseServerThread {
         return sendToClient(rrp);
     }
 
+    /**
+     * Sends a page of the room directory
+     * 
+     * @param page
+     * @return true for successful send
+     */
+    public boolean sendRoomDirectory(RoomDirectory.Page page) {
+        RoomDirectoryPayload rdp = new RoomDirectoryPayload();
+        rdp.setRooms(page.getRooms());
+        rdp.setCursor(page.getNextCursor());
+        if (page.getRooms().isEmpty()) {
+            rdp.setMessage("No rooms found matching your query");
+        }
+        return sendToClient(rdp);
+    }
+
     protected boolean sendDisconnect(long clientId) {
         Payload payload = new Payload();
         payload.setClientId(clientId);
@@ -278,77 +425,107 @@ public class ServerThread extends BaseServerThread {
      * @return true for successful send
      */
     protected boolean sendMessage(long clientId, String message) {
-        Payload payload = new Payload();
-        payload.setPayloadType(PayloadType.MESSAGE);
-        payload.setMessage(message);
-        payload.setClientId(clientId);
-        return sendToClient(payload);
+        return sendToClient(createMessagePayload(clientId, message));
     }
 
     // End Send*() Methods
     @Override
     protected void processPayload(Payload incoming) {
-
+        // well-formed frames can still carry no type or the wrong class for it
+        if (incoming.getPayloadType() == null) {
+            rejectPayload(incoming, "no payload type");
+            return;
+        }
         switch (incoming.getPayloadType()) {
             case CLIENT_CONNECT:
+                if (!(incoming instanceof ConnectionPayload)
+                        || ((ConnectionPayload) incoming).getClientName() == null) {
+                    rejectPayload(incoming, "no client name");
+                    break;
+                }
                 setClientName(((ConnectionPayload) incoming).getClientName().trim());
 
                 break;
             case DISCONNECT:
-                currentRoom.handleDisconnect(this);
+                dispatch(room -> room.handleDisconnect(this));
                 break;
             case MESSAGE:
-                currentRoom.handleMessage(this, incoming.getMessage());
+                dispatch(room -> room.handleMessage(this, incoming.getMessage()));
                 break;
             case REVERSE:
-                currentRoom.handleReverseText(this, incoming.getMessage());
+                dispatch(room -> room.handleReverseText(this, incoming.getMessage()));
                 break;
             case ROOM_CREATE:
-                currentRoom.handleCreateRoom(this, incoming.getMessage());
+                dispatch(room -> room.handleCreateRoom(this, incoming.getMessage()));
                 break;
             case ROOM_JOIN:
-                currentRoom.handleJoinRoom(this, incoming.getMessage());
+                dispatch(room -> room.handleJoinRoom(this, incoming.getMessage()));
                 break;
             case ROOM_LEAVE:
-                currentRoom.handleJoinRoom(this, Room.LOBBY);
+                dispatch(room -> room.handleJoinRoom(this, Room.LOBBY));
                 break;
             case ROOM_LIST:
-                currentRoom.handleListRooms(this, incoming.getMessage());
+                dispatch(room -> room.handleListRooms(this, incoming.getMessage()));
+                break;
+            case ROOM_DIRECTORY:
+                if (!(incoming instanceof RoomDirectoryPayload)) {
+                    rejectPayload(incoming, "not a RoomDirectoryPayload");
+                    break;
+                }
+                // served from the directory snapshot, the rooms aren't involved
+                RoomDirectoryPayload request = (RoomDirectoryPayload) incoming;
+                sendRoomDirectory(Server.INSTANCE.getRoomDirectory().page(request.getMessage(), request.getCursor(),
+                        request.getLimit()));
+                break;
+            case ROOM_DIRECTORY_SUBSCRIBE:
+                if (incoming.getMessage() == null) {
+                    Server.INSTANCE.getRoomDirectory().unsubscribe(this);
+                } else {
+                    Server.INSTANCE.getRoomDirectory().subscribe(this, incoming.getMessage());
+                }
                 break;
             case READY:
                 // no data needed as the intent will be used as the trigger
-                try {
-                    // cast to GameRoom as the subclass will handle all Game logic
-                    ((GameRoom) currentRoom).handleReady(this);
-                } catch (Exception e) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do the ready check");
-                }
+                dispatch(room -> {
+                    try {
+                        // cast to GameRoom as the subclass will handle all Game logic
+                        ((GameRoom) room).handleReady(this);
+                    } catch (Exception e) {
+                        sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do the ready check");
+                    }
+                });
                 break;
             case TURN:
                 // no data needed as the intent will be used as the trigger
-                try {
-                    // cast to GameRoom as the subclass will handle all Game logic
-                    ((GameRoom) currentRoom).handleTurnAction(this, incoming.getMessage());
-                } catch (Exception e) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do a turn");
-                }
+                dispatch(room -> {
+                    try {
+                        // cast to GameRoom as the subclass will handle all Game logic
+                        ((GameRoom) room).handleTurnAction(this, incoming.getMessage());
+                    } catch (Exception e) {
+                        sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to do a turn");
+                    }
+                });
                 break;
             case SETTINGS:
                 // no data needed as the intent will be used as the trigger
-                try {
-                    // cast to GameRoom as the subclass will handle all Game logic
-                    ((GameRoom) currentRoom).handleSettings(this, incoming.getMessage());
-                } catch (Exception e) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to change settings");
-                }
+                dispatch(room -> {
+                    try {
+                        // cast to GameRoom as the subclass will handle all Game logic
+                        ((GameRoom) room).handleSettings(this, incoming.getMessage());
+                    } catch (Exception e) {
+                        sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to change settings");
+                    }
+                });
                 break;
             case AWAY:
-                try {
-                    // reuse existing logic from GameRoom which toggles away status
-                    ((GameRoom) currentRoom).handleSettings(this, "away");
-                } catch (Exception e) {
-                    sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to use the Away feature");
-                }
+                dispatch(room -> {
+                    try {
+                        // reuse existing logic from GameRoom which toggles away status
+                        ((GameRoom) room).handleSettings(this, "away");
+                    } catch (Exception e) {
+                        sendMessage(Constants.DEFAULT_CLIENT_ID, "You must be in a GameRoom to use the Away feature");
+                    }
+                });
                 break;
             default:
                 LoggerUtil.INSTANCE.warning(TextFX.colorize("Unknown payload type received", Color.RED));
@@ -356,6 +533,33 @@ public class ServerThread extends BaseServerThread {
         }
     }
 
+    private void rejectPayload(Payload incoming, String reason) {
+        LoggerUtil.INSTANCE.warning(String.format("Ignoring payload from %s (%s): %s", getDisplayName(), reason,
+                incoming));
+    }
+
+    /**
+     * Posts a payload's handler to the current Room's mailbox.
+     * If the client moved on before it ran (i.e., a join was already queued
+     * ahead of it) it's forwarded to the new Room instead of acting on the old
+     * one.
+     * 
+     * @param action
+     */
+    private void dispatch(Consumer<Room> action) {
+        final Room room = currentRoom;
+        if (room == null) {
+            return;
+        }
+        room.execute(() -> {
+            if (currentRoom != room) {
+                dispatch(action);
+                return;
+            }
+            action.accept(room);
+        });
+    }
+
     // limited user data exposer
     protected boolean isReady() {
         return this.user.isReady();
@@ -385,11 +589,11 @@ public class ServerThread extends BaseServerThread {
         this.user.setPoints(this.user.getPoints() + points);
     }
 
-    protected String getChoice() {
+    protected Choice getChoice() {
         return this.user.getChoice();
     }
 
-    protected void setChoice(String choice) {
+    protected void setChoice(Choice choice) {
         this.user.setChoice(choice);
     }
 
@@ -402,11 +606,11 @@ public class ServerThread extends BaseServerThread {
         this.user.setEliminated(isEliminated);
     }
 
-    protected String getLastChoice() {
+    protected Choice getLastChoice() {
         return this.user.getLastChoice();
     }
 
-    protected void setLastChoice(String lastChoice) {
+    protected void setLastChoice(Choice lastChoice) {
         this.user.setLastChoice(lastChoice);
     }
 
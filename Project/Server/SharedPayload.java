@@ -0,0 +1,51 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import Project.Common.FrameCodec;
+import Project.Common.Payload;
+
+/**
+ * A Payload that's sent to many clients, encoded at most once per wire
+ * version no matter how many recipients there are.
+ * <p>
+ * Each recipient's queue gets its own duplicate() of the shared frame so
+ * they can track their write position independently while reading the same
+ * bytes.
+ * </p>
+ * <p>
+ * Note: Not thread safe, a Room builds one and fans it out from a single
+ * thread (i.e., from the room's mailbox). The Payload must not be changed
+ * after the first frame is encoded.
+ * </p>
+ */
+public class SharedPayload {
+    private final Payload payload;
+    // indexed by FrameCodec version
+    private final ByteBuffer[] frames = new ByteBuffer[FrameCodec.VERSION_BINARY + 1];
+
+    public SharedPayload(Payload payload) {
+        this.payload = payload;
+    }
+
+    public Payload getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns a view of the encoded frame, encoding it on first use
+     *
+     * @param version FrameCodec version of the recipient
+     * @return a new buffer over the shared bytes positioned at 0
+     * @throws IOException if the payload can't be encoded
+     */
+    public ByteBuffer getFrame(int version) throws IOException {
+        ByteBuffer frame = frames[version];
+        if (frame == null) {
+            frame = FrameCodec.encodeFrame(payload, version);
+            frames[version] = frame;
+        }
+        return frame.duplicate();
+    }
+}
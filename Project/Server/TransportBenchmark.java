@@ -0,0 +1,191 @@
+package Project.Server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import Project.Common.ConnectionPayload;
+import Project.Common.FrameCodec;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+
+/**
+ * Compares the transports by memory per connection and lobby relay latency.
+ * <p>
+ * Usage: <code>java Project.Server.TransportBenchmark thread|virtual|nio
+ * [connections] [messages] [serialized|binary]</code>
+ * </p>
+ * <p>
+ * Note: The Server is a singleton so run one mode per JVM. The load clients
+ * live in the same JVM (each reads on a virtual thread), their overhead is the
+ * same for every mode so the numbers are meant to be compared, not read as
+ * absolutes.
+ * </p>
+ */
+public class TransportBenchmark {
+    private static final String BENCH_PREFIX = "bench ";
+
+    private static class LoadClient {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final int version;
+        private final CountDownLatch connected = new CountDownLatch(1);
+
+        LoadClient(int port, String name, int version) throws IOException {
+            this.version = version;
+            socket = new Socket("localhost", port);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            FrameCodec.writeHandshake(out, version);
+            ConnectionPayload cp = new ConnectionPayload();
+            cp.setPayloadType(PayloadType.CLIENT_CONNECT);
+            cp.setClientName(name);
+            FrameCodec.writeFrame(out, cp, version);
+        }
+
+        void listen(ConcurrentLinkedQueue<Long> latencies, CountDownLatch received) {
+            try {
+                while (!socket.isClosed()) {
+                    Payload p = FrameCodec.readFrame(in, version);
+                    if (p.getPayloadType() == PayloadType.CLIENT_ID) {
+                        connected.countDown();
+                    } else if (p.getPayloadType() == PayloadType.MESSAGE && p.getMessage() != null
+                            && p.getMessage().startsWith(BENCH_PREFIX)) {
+                        long sentAt = Long.parseLong(p.getMessage().substring(BENCH_PREFIX.length()));
+                        latencies.add(System.nanoTime() - sentAt);
+                        received.countDown();
+                    }
+                }
+            } catch (IOException e) {
+                // socket closed at the end of the run
+            }
+        }
+
+        void send(String message) throws IOException {
+            Payload p = new Payload();
+            p.setPayloadType(PayloadType.MESSAGE);
+            p.setMessage(message);
+            FrameCodec.writeFrame(out, p, version);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * @return resident set size in KB (Linux only) or -1
+     */
+    private static long residentKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (Exception e) {
+            // not available on this OS
+        }
+        return -1;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    public static void main(String[] args) throws Exception {
+        TransportMode mode = args.length > 0 ? TransportMode.valueOf(args[0].toUpperCase()) : TransportMode.THREAD;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int messages = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int version = args.length > 3 && args[3].equalsIgnoreCase("serialized") ? FrameCodec.VERSION_SERIALIZED
+                : FrameCodec.VERSION_BINARY;
+        int port = 3100;
+
+        // keep logging out of the measurement (configured before the Server does)
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("benchmark.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        Thread serverThread = new Thread(() -> Server.INSTANCE.start(port, mode), "benchmark-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        Thread.sleep(1000);
+
+        int platformThreadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        long rssBefore = residentKb();
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        CountDownLatch received = new CountDownLatch(connections * messages);
+        List<LoadClient> clients = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            LoadClient client = new LoadClient(port, "bench" + i, version);
+            clients.add(client);
+            Thread.ofVirtual().start(() -> client.listen(latencies, received));
+        }
+        for (LoadClient client : clients) {
+            if (!client.connected.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Client never received its id");
+            }
+        }
+        // let the lobby join notifications settle before measuring
+        Thread.sleep(2000);
+        long heapAfter = usedHeap();
+        long rssAfter = residentKb();
+        int platformThreadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        LoadClient sender = clients.get(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            sender.send(BENCH_PREFIX + System.nanoTime());
+            Thread.sleep(10);
+        }
+        boolean complete = received.await(60, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.println(String.format("Transport: %s, connections: %d, messages: %d, wire: %s", mode, connections,
+                messages, FrameCodec.describe(version)));
+        System.out.println(String.format("Heap per connection: %.1f KB",
+                (heapAfter - heapBefore) / 1024.0 / connections));
+        if (rssBefore > 0) {
+            System.out.println(String.format("RSS per connection: %.1f KB", (rssAfter - rssBefore) / (double) connections));
+        }
+        System.out.println(String.format("Platform threads: %d -> %d", platformThreadsBefore, platformThreadsAfter));
+        System.out.println(String.format("Relay latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms (%d samples%s, %d ms)",
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                percentile(sorted, 1.0) / 1e6, sorted.length, complete ? "" : ", incomplete", elapsedMs));
+
+        for (LoadClient client : clients) {
+            client.socket.close();
+        }
+        System.exit(0);
+    }
+}
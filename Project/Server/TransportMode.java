@@ -0,0 +1,11 @@
+package Project.Server;
+
+/**
+ * How the Server accepts and serves client connections (second program
+ * argument, i.e., <code>java Project.Server.Server 3000 nio</code>)
+ */
+public enum TransportMode {
+    THREAD, // one blocking ServerThread per client (default)
+    VIRTUAL, // same blocking read loop but each client runs on a virtual thread
+    NIO, // selector based event loops, see NioServer
+}